@@ -0,0 +1,55 @@
+package xyz.hanamae.hanaWeapons.bench;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.Result;
+import org.openjdk.jmh.results.RunResult;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.Map;
+
+/**
+ * 用 -prof gc 运行 CombatGeometryBenchmark，检查每个方法的 gc.alloc.rate.norm
+ * 任一方法每次调用分配超过 MAX_BYTES_PER_OP 时以非 0 状态退出 (mvn verify 失败)。
+ */
+public final class AllocationCheck {
+
+    // 留出测量误差，真正的分配至少是一个对象头 (16 B)
+    private static final double MAX_BYTES_PER_OP = 1.0;
+    private static final String ALLOC_KEY = "gc.alloc.rate.norm";
+
+    private AllocationCheck() {
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options options = new OptionsBuilder()
+                .include(CombatGeometryBenchmark.class.getName().replace(".", "\\.") + "\\.")
+                .addProfiler(GCProfiler.class)
+                .build();
+
+        boolean failed = false;
+        for (RunResult result : new Runner(options).run()) {
+            String name = result.getParams().getBenchmark();
+            Result<?> alloc = null;
+            for (Map.Entry<String, Result> entry : result.getSecondaryResults().entrySet()) {
+                if (entry.getKey().endsWith(ALLOC_KEY)) alloc = entry.getValue();
+            }
+            if (alloc == null) {
+                System.err.println("[FAIL] " + name + ": no " + ALLOC_KEY + " result (GC profiler unavailable?)");
+                failed = true;
+                continue;
+            }
+            double bytes = alloc.getScore();
+            boolean ok = bytes <= MAX_BYTES_PER_OP;
+            System.out.printf("[%s] %s: %.3f B/op%n", ok ? " OK " : "FAIL", name, bytes);
+            if (!ok) failed = true;
+        }
+
+        if (failed) {
+            System.err.println("CombatGeometry allocates on the hot path (limit " + MAX_BYTES_PER_OP + " B/op).");
+            System.exit(1);
+        }
+    }
+}
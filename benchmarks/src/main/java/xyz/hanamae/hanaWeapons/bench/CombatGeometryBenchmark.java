@@ -0,0 +1,82 @@
+package xyz.hanamae.hanaWeapons.bench;
+
+import org.bukkit.util.BoundingBox;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import xyz.hanamae.hanaWeapons.CombatGeometry;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * CombatGeometry 判定核心的基准
+ * 每次攻击判定都会调用这些方法，要求不产生任何分配 (由 AllocationCheck 用 -prof gc 检查)。
+ * 参数放在非 final 字段中，防止 JIT 把整个计算常量折叠掉。
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CombatGeometryBenchmark {
+
+    // 攻击者的眼睛位置和视角
+    private double eyeX = 0.5;
+    private double eyeY = 65.62;
+    private double eyeZ = 0.5;
+    private float yaw = -35.0f;
+    private float pitch = 8.0f;
+    private double dirX;
+    private double dirY;
+    private double dirZ;
+
+    // 冲刺一 tick 的路径 (SquareOffSkill 的扫掠线段)
+    private double toX = 1.6;
+    private double toY = 64.9;
+    private double toZ = 2.1;
+    private double range = 3.0;
+
+    // 前方约 3 格处的玩家大小的碰撞箱
+    private BoundingBox box;
+
+    @Setup
+    public void setup() {
+        dirX = CombatGeometry.lookX(yaw, pitch);
+        dirY = CombatGeometry.lookY(pitch);
+        dirZ = CombatGeometry.lookZ(yaw, pitch);
+        box = new BoundingBox(1.7, 64.0, 2.6, 2.3, 65.8, 3.2);
+    }
+
+    @Benchmark
+    public double facingDot() {
+        return CombatGeometry.facingDot(yaw, eyeX, eyeZ, box.getCenterX(), box.getCenterZ());
+    }
+
+    @Benchmark
+    public double pointBoxDistanceSq() {
+        return CombatGeometry.pointBoxDistanceSq(eyeX, eyeY, eyeZ, box);
+    }
+
+    @Benchmark
+    public double segmentBoxDistanceSq() {
+        return CombatGeometry.segmentBoxDistanceSq(eyeX, eyeY, eyeZ, toX, toY, toZ, box);
+    }
+
+    @Benchmark
+    public double rayBoxDistance() {
+        return CombatGeometry.rayBoxDistance(eyeX, eyeY, eyeZ, dirX, dirY, dirZ, box, 0.1, range * 2.0);
+    }
+
+    @Benchmark
+    public boolean capsuleIntersectsBox() {
+        return CombatGeometry.capsuleIntersectsBox(eyeX, eyeY, eyeZ, toX, toY, toZ, range, box);
+    }
+}
@@ -0,0 +1,178 @@
+package xyz.hanamae.hanaWeapons;
+
+import org.bukkit.Location;
+import org.bukkit.entity.Entity;
+import org.bukkit.entity.LivingEntity;
+import org.bukkit.util.BoundingBox;
+
+/**
+ * 战斗判定用的几何计算
+ * 全部使用 double 参数，不创建 Vector / Location。
+ * 读取实体坐标的辅助方法使用复用的 Location (实体只能在主线程访问，所以不存在并发问题)，
+ * 读取后立即清空 world，不会让已卸载的世界一直保持可达。
+ */
+public final class CombatGeometry {
+
+    // 线段-AABB 距离的三分搜索次数 (每次区间缩小到 2/3，24 次后误差 < 1e-4)
+    private static final int SEGMENT_ITERATIONS = 24;
+
+    private static final Location FIRST = new Location(null, 0, 0, 0);
+    private static final Location SECOND = new Location(null, 0, 0, 0);
+
+    private CombatGeometry() {
+    }
+
+    // ================== 视线方向 (与 Location.getDirection 相同的公式) ==================
+
+    public static double lookX(float yaw, float pitch) {
+        return -Math.cos(Math.toRadians(pitch)) * Math.sin(Math.toRadians(yaw));
+    }
+
+    public static double lookY(float pitch) {
+        return -Math.sin(Math.toRadians(pitch));
+    }
+
+    public static double lookZ(float yaw, float pitch) {
+        return Math.cos(Math.toRadians(pitch)) * Math.cos(Math.toRadians(yaw));
+    }
+
+    // ================== 朝向 / 距离 ==================
+
+    /**
+     * 水平朝向点积：yaw 方向的水平单位向量 · (from → to 的水平单位向量)
+     * 大于 0 表示 to 在 from 的前方半平面内；两点水平重合时为 NaN (与 Vector.normalize 的结果一致)
+     */
+    public static double facingDot(float yaw, double fromX, double fromZ, double toX, double toZ) {
+        double rad = Math.toRadians(yaw);
+        double dx = toX - fromX;
+        double dz = toZ - fromZ;
+        double length = Math.sqrt(dx * dx + dz * dz);
+        return (-Math.sin(rad) * dx + Math.cos(rad) * dz) / length;
+    }
+
+    public static double horizontalDistanceSq(double x1, double z1, double x2, double z2) {
+        double dx = x2 - x1;
+        double dz = z2 - z1;
+        return dx * dx + dz * dz;
+    }
+
+    public static double distanceSq(double x1, double y1, double z1, double x2, double y2, double z2) {
+        double dx = x2 - x1;
+        double dy = y2 - y1;
+        double dz = z2 - z1;
+        return dx * dx + dy * dy + dz * dz;
+    }
+
+    // ================== 实体辅助 (主线程) ==================
+
+    /**
+     * viewer 的水平视线与指向 target 方向的点积
+     */
+    public static double facingDot(Entity viewer, Entity target) {
+        Location from = viewer.getLocation(FIRST);
+        Location to = target.getLocation(SECOND);
+        double dot = facingDot(from.getYaw(), from.getX(), from.getZ(), to.getX(), to.getZ());
+        FIRST.setWorld(null);
+        SECOND.setWorld(null);
+        return dot;
+    }
+
+    /**
+     * from 的眼睛到 target 脚底的距离平方
+     */
+    public static double eyeToFeetDistanceSq(LivingEntity from, Entity target) {
+        Location eye = from.getLocation(FIRST);
+        Location feet = target.getLocation(SECOND);
+        double distance = distanceSq(eye.getX(), eye.getY() + from.getEyeHeight(), eye.getZ(), feet.getX(), feet.getY(), feet.getZ());
+        FIRST.setWorld(null);
+        SECOND.setWorld(null);
+        return distance;
+    }
+
+    /**
+     * 点到 AABB 的距离平方 (点在盒内时为 0)
+     */
+    public static double pointBoxDistanceSq(double px, double py, double pz, BoundingBox box) {
+        double dx = Math.max(Math.max(box.getMinX() - px, 0.0), px - box.getMaxX());
+        double dy = Math.max(Math.max(box.getMinY() - py, 0.0), py - box.getMaxY());
+        double dz = Math.max(Math.max(box.getMinZ() - pz, 0.0), pz - box.getMaxZ());
+        return dx * dx + dy * dy + dz * dz;
+    }
+
+    /**
+     * 线段 A→B 到 AABB 的最短距离平方
+     * 距离沿线段是凸函数，用三分搜索求最小值。
+     */
+    public static double segmentBoxDistanceSq(double ax, double ay, double az, double bx, double by, double bz, BoundingBox box) {
+        double dx = bx - ax;
+        double dy = by - ay;
+        double dz = bz - az;
+        if (dx * dx + dy * dy + dz * dz < 1.0E-8) {
+            return pointBoxDistanceSq(ax, ay, az, box);
+        }
+        double lo = 0.0;
+        double hi = 1.0;
+        for (int i = 0; i < SEGMENT_ITERATIONS; i++) {
+            double t1 = lo + (hi - lo) / 3.0;
+            double t2 = hi - (hi - lo) / 3.0;
+            double d1 = pointBoxDistanceSq(ax + dx * t1, ay + dy * t1, az + dz * t1, box);
+            double d2 = pointBoxDistanceSq(ax + dx * t2, ay + dy * t2, az + dz * t2, box);
+            if (d1 <= d2) hi = t2;
+            else lo = t1;
+        }
+        double t = (lo + hi) * 0.5;
+        return pointBoxDistanceSq(ax + dx * t, ay + dy * t, az + dz * t, box);
+    }
+
+    /**
+     * 射线与 AABB (各方向外扩 expand) 的相交距离 (slab 算法)
+     * @param dx 射线方向 (单位向量)
+     * @return 射线起点到交点的距离，超出 maxDistance 或不相交时返回 -1
+     */
+    public static double rayBoxDistance(double ox, double oy, double oz, double dx, double dy, double dz,
+                                        BoundingBox box, double expand, double maxDistance) {
+        double tMin = 0.0;
+        double tMax = maxDistance;
+
+        // X
+        double min = box.getMinX() - expand, max = box.getMaxX() + expand;
+        if (Math.abs(dx) < 1.0E-9) {
+            if (ox < min || ox > max) return -1;
+        } else {
+            double t1 = (min - ox) / dx, t2 = (max - ox) / dx;
+            tMin = Math.max(tMin, Math.min(t1, t2));
+            tMax = Math.min(tMax, Math.max(t1, t2));
+            if (tMin > tMax) return -1;
+        }
+        // Y
+        min = box.getMinY() - expand;
+        max = box.getMaxY() + expand;
+        if (Math.abs(dy) < 1.0E-9) {
+            if (oy < min || oy > max) return -1;
+        } else {
+            double t1 = (min - oy) / dy, t2 = (max - oy) / dy;
+            tMin = Math.max(tMin, Math.min(t1, t2));
+            tMax = Math.min(tMax, Math.max(t1, t2));
+            if (tMin > tMax) return -1;
+        }
+        // Z
+        min = box.getMinZ() - expand;
+        max = box.getMaxZ() + expand;
+        if (Math.abs(dz) < 1.0E-9) {
+            if (oz < min || oz > max) return -1;
+        } else {
+            double t1 = (min - oz) / dz, t2 = (max - oz) / dz;
+            tMin = Math.max(tMin, Math.min(t1, t2));
+            tMax = Math.min(tMax, Math.max(t1, t2));
+            if (tMin > tMax) return -1;
+        }
+        return tMin;
+    }
+
+    /**
+     * 胶囊体 (线段 A→B，半径 radius) 是否与 AABB 相交
+     */
+    public static boolean capsuleIntersectsBox(double ax, double ay, double az, double bx, double by, double bz, double radius, BoundingBox box) {
+        return segmentBoxDistanceSq(ax, ay, az, bx, by, bz, box) <= radius * radius;
+    }
+}
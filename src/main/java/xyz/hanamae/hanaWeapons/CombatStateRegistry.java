@@ -0,0 +1,81 @@
+package xyz.hanamae.hanaWeapons;
+
+import org.bukkit.Bukkit;
+import org.bukkit.entity.Player;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
+import org.bukkit.event.Listener;
+import org.bukkit.event.player.PlayerJoinEvent;
+import org.bukkit.event.player.PlayerQuitEvent;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * 玩家战斗状态注册表
+ * 加入时创建 PlayerCombatState，退出时释放，保证不会为离线玩家残留任何条目。
+ */
+public class CombatStateRegistry implements Listener {
+
+    private final Map<UUID, PlayerCombatState> states = new HashMap<>();
+
+    /**
+     * 获取玩家的战斗状态
+     * 插件重载时已在线的玩家 (或没有触发加入事件的 NPC) 会在首次访问时创建；
+     * 玩家已离线时 (延迟任务等晚到的调用) 返回一个不保存的临时状态，退出后不会重新留下条目
+     */
+    public PlayerCombatState get(Player player) {
+        PlayerCombatState state = states.get(player.getUniqueId());
+        if (state == null || state.player != player) {
+            state = new PlayerCombatState(player);
+            if (!player.isOnline()) return state;
+            PlayerCombatState old = states.put(player.getUniqueId(), state);
+            if (old != null) old.release();
+        }
+        return state;
+    }
+
+    /**
+     * 遍历所有状态 (例如重载配置后统一刷新)
+     */
+    public Iterable<PlayerCombatState> all() {
+        return states.values();
+    }
+
+    public int size() {
+        return states.size();
+    }
+
+    /**
+     * 为已在线的玩家创建状态 (插件启用时)
+     */
+    public void loadOnline() {
+        for (Player player : Bukkit.getOnlinePlayers()) {
+            get(player);
+        }
+    }
+
+    /**
+     * 插件关闭时释放全部状态
+     */
+    public void clear() {
+        for (PlayerCombatState state : states.values()) {
+            state.release();
+        }
+        states.clear();
+    }
+
+    @EventHandler(priority = EventPriority.LOWEST)
+    public void onJoin(PlayerJoinEvent event) {
+        Player player = event.getPlayer();
+        PlayerCombatState old = states.put(player.getUniqueId(), new PlayerCombatState(player));
+        if (old != null) old.release();
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onQuit(PlayerQuitEvent event) {
+        PlayerCombatState state = states.remove(event.getPlayer().getUniqueId());
+        if (state != null) state.release();
+    }
+}
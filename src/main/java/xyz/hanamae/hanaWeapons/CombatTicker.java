@@ -0,0 +1,177 @@
+package xyz.hanamae.hanaWeapons;
+
+import org.bukkit.Bukkit;
+import org.bukkit.entity.Player;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
+import org.bukkit.event.Listener;
+import org.bukkit.event.player.PlayerJoinEvent;
+import org.bukkit.event.player.PlayerQuitEvent;
+import org.bukkit.scheduler.BukkitTask;
+
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * 战斗 Tick 管线
+ * 用一个每 tick 任务按固定顺序执行各阶段 (格挡追踪 → 架势蓄力 → 架势条恢复 → HUD)，
+ * 并且只遍历"活跃"玩家：手持 Hana 武器、正在蓄力、架势条恢复中或处于僵直/破防的玩家。
+ * 其余玩家 (例如挂机的玩家) 每 tick 没有任何开销，直到切换物品、受击等事件重新激活他们。
+ */
+public class CombatTicker implements Listener {
+
+    /**
+     * 阶段 (按声明顺序执行)
+     */
+    public enum Stage {
+        BLOCK_TRACKING,
+        STANCE_CHARGE,
+        POSTURE_REGEN,
+        HUD
+    }
+
+    /**
+     * 阶段处理器
+     */
+    @FunctionalInterface
+    public interface StageHandler {
+        /**
+         * @param state 玩家的战斗状态 (已缓存在活跃集合中，无需再次查询)
+         * @return 玩家是否仍需要在下一 tick 继续处理 (任意阶段返回 true 即保持活跃)
+         */
+        boolean tick(Player player, PlayerCombatState state, long now);
+    }
+
+    private final HanaWeapons plugin;
+    private final Map<Stage, List<StageHandler>> handlers = new EnumMap<>(Stage.class);
+    private StageHandler[] pipeline = new StageHandler[0];
+    // 与玩家无关的每 tick 任务 (例如清理到期的生物僵直)，在遍历活跃玩家之前执行
+    private Runnable[] globalTasks = new Runnable[0];
+
+    private final Map<UUID, PlayerCombatState> active = new LinkedHashMap<>();
+    // tick 过程中激活的玩家，在本 tick 结束后并入活跃集合
+    private final List<PlayerCombatState> pendingActivations = new ArrayList<>();
+    private boolean ticking;
+    private BukkitTask task;
+
+    public CombatTicker(HanaWeapons plugin) {
+        this.plugin = plugin;
+    }
+
+    /**
+     * 注册阶段处理器 (同一阶段内按注册顺序执行)
+     */
+    public void register(Stage stage, StageHandler handler) {
+        handlers.computeIfAbsent(stage, s -> new ArrayList<>()).add(handler);
+        List<StageHandler> ordered = new ArrayList<>();
+        for (Stage s : Stage.values()) {
+            List<StageHandler> list = handlers.get(s);
+            if (list != null) ordered.addAll(list);
+        }
+        pipeline = ordered.toArray(new StageHandler[0]);
+    }
+
+    /**
+     * 注册每 tick 执行一次的全局任务 (活跃集合为空时同样执行)
+     */
+    public void registerGlobal(Runnable task) {
+        Runnable[] tasks = java.util.Arrays.copyOf(globalTasks, globalTasks.length + 1);
+        tasks[globalTasks.length] = task;
+        globalTasks = tasks;
+    }
+
+    public void start() {
+        if (task != null) return;
+        // 插件重载时已在线的玩家也需要检查一次
+        activateAll();
+        task = Bukkit.getScheduler().runTaskTimer(plugin, this::tick, 1L, 1L);
+    }
+
+    public void stop() {
+        if (task != null) {
+            task.cancel();
+            task = null;
+        }
+        active.clear();
+        pendingActivations.clear();
+    }
+
+    /**
+     * 将玩家加入活跃集合 (状态可能发生变化时调用，重复调用无副作用)
+     */
+    public void activate(Player player) {
+        activate(plugin.getCombatStates().get(player));
+    }
+
+    public void activate(PlayerCombatState state) {
+        if (ticking) {
+            pendingActivations.add(state);
+        } else {
+            active.put(state.player.getUniqueId(), state);
+        }
+    }
+
+    /**
+     * 激活所有在线玩家 (例如重载武器配置后)
+     */
+    public void activateAll() {
+        for (Player player : Bukkit.getOnlinePlayers()) {
+            activate(player);
+        }
+    }
+
+    public int getActiveCount() {
+        return active.size();
+    }
+
+    private void tick() {
+        for (Runnable task : globalTasks) {
+            task.run();
+        }
+        if (active.isEmpty()) return;
+        long now = System.currentTimeMillis();
+        StageHandler[] stages = pipeline;
+
+        ticking = true;
+        try {
+            Iterator<PlayerCombatState> it = active.values().iterator();
+            while (it.hasNext()) {
+                PlayerCombatState state = it.next();
+                Player player = state.player;
+                if (!player.isOnline()) {
+                    it.remove();
+                    continue;
+                }
+                boolean keep = false;
+                for (StageHandler stage : stages) {
+                    keep |= stage.tick(player, state, now);
+                }
+                if (!keep) it.remove();
+            }
+        } finally {
+            ticking = false;
+        }
+
+        if (!pendingActivations.isEmpty()) {
+            for (PlayerCombatState state : pendingActivations) {
+                if (state.player.isOnline()) active.put(state.player.getUniqueId(), state);
+            }
+            pendingActivations.clear();
+        }
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onJoin(PlayerJoinEvent event) {
+        activate(event.getPlayer());
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onQuit(PlayerQuitEvent event) {
+        active.remove(event.getPlayer().getUniqueId());
+    }
+}
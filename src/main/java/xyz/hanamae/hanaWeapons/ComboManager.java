@@ -1,114 +1,101 @@
 package xyz.hanamae.hanaWeapons;
 
-import org.bukkit.Bukkit;
 import org.bukkit.entity.Player;
 import org.bukkit.inventory.ItemStack;
 import org.bukkit.inventory.meta.ItemMeta;
-import org.bukkit.scheduler.BukkitTask;
-
-import java.util.HashMap;
-import java.util.Map;
-import java.util.UUID;
 
 public class ComboManager {
 
     private final HanaWeapons plugin;
     private final WeaponManager weaponManager;
-    private final Map<UUID, Integer> comboStage = new HashMap<>(); // Current stage (0-based index)
-    private final Map<UUID, Long> lastAttackTime = new HashMap<>();
-    private final Map<UUID, BukkitTask> resetTasks = new HashMap<>();
-
-    private final Map<UUID, Long> lastComboUpdate = new HashMap<>(); // Last time the combo STAGE was updated
+    // 连招阶段、时间戳和重置截止时间存放在 PlayerCombatState 中
+    private final ComboResetWheel resetWheel;
 
     public ComboManager(HanaWeapons plugin, WeaponManager weaponManager) {
         this.plugin = plugin;
         this.weaponManager = weaponManager;
+        this.resetWheel = new ComboResetWheel(plugin, this::resetCombo);
+        this.resetWheel.start();
+    }
+
+    /**
+     * 获取连招重置时间轮
+     */
+    public ComboResetWheel getResetWheel() {
+        return resetWheel;
     }
 
     /**
      * 处理玩家攻击时的连招逻辑
      * 1. 检查连招状态
-     * 2. 计算下一次攻击的阶段
+     * 2. 按 (当前阶段, 攻击输入) 查转移表，得到本次招式和下一次攻击的阶段
      * 3. 切换武器模型 (Pose)
      * 4. 设置连招重置任务
      */
     public void handleAttack(Player player, ItemStack weapon, WeaponManager.WeaponData data) {
-        if (!data.comboEnabled || data.comboSteps.isEmpty()) return;
+        ComboTable combo = data.combo;
+        if (combo == null) return;
 
-        UUID uuid = player.getUniqueId();
+        PlayerCombatState state = plugin.getCombatStates().get(player);
         long now = System.currentTimeMillis();
         
         // Debounce: 如果距离上次连招更新太近 (< 50ms)，则忽略此次更新
         // 防止横扫攻击 (Sweep Attack) 一次挥剑触发多次连招推进
-        if (lastComboUpdate.containsKey(uuid)) {
-            long timeDiff = now - lastComboUpdate.get(uuid);
+        if (state.lastComboUpdate != 0) {
+            long timeDiff = now - state.lastComboUpdate;
             if (timeDiff < 50) { // 50ms threshold
                 // plugin.getLogger().info("DEBUG: Ignoring sweep attack for combo (diff: " + timeDiff + "ms)");
                 return;
             }
         }
         
-        int currentStage = comboStage.getOrDefault(uuid, 0);
+        // 重载后阶段数可能变少，cell 会从第一阶段开始
+        int cell = combo.cell(state.comboStage, input(player));
         
-        // Check if previous combo timed out (though task should handle it, double check)
         // Update time
-        lastAttackTime.put(uuid, now);
-        lastComboUpdate.put(uuid, now); // 标记此次为有效的连招更新
-
-        // Determine next stage
-        int nextStage = 0;
-        
-        // Get current step config to see if it dictates the next step
-        WeaponManager.ComboStep currentStepConfig = data.comboSteps.get(currentStage);
-        
-        // Fix: Use the current step's nextStep config
-        if (currentStepConfig.nextStep >= 0 && currentStepConfig.nextStep < data.comboSteps.size()) {
-            nextStage = currentStepConfig.nextStep;
-        } else {
-            // Default: +1, loop
-            nextStage = (currentStage + 1) % data.comboSteps.size();
-        }
-        
-        // Cancel old reset task
-        if (resetTasks.containsKey(uuid)) {
-            resetTasks.get(uuid).cancel();
-        }
+        state.lastAttackTime = now;
+        state.lastComboUpdate = now; // 标记此次为有效的连招更新
         
-        // Schedule new reset task
-        BukkitTask task = Bukkit.getScheduler().runTaskLater(plugin, () -> {
-            resetCombo(player, data);
-        }, (long) (data.comboResetTime / 50.0));
-        resetTasks.put(uuid, task);
+        // 推后重置时间 (时间轮中原地更新，不再新建任务)，每个招式可以有自己的重置时间
+        state.comboWeapon = data;
+        resetWheel.schedule(state, combo.resetTicks(cell));
         
         // Update Combo Stage for NEXT attack
-        comboStage.put(uuid, nextStage);
+        state.comboStage = combo.next(cell);
         
         // Apply "Pose" based on the CURRENT attack's requirement for AFTER-ATTACK pose
-        updateWeaponModel(player, weapon, data.name, currentStepConfig.poseModelAdd, currentStepConfig.actionBar);
+        updateWeaponModel(player, weapon, data.name, combo.pose(cell), combo.actionBar(cell));
     }
     
     /**
-     * 获取当前连招阶段的伤害倍率
+     * 获取当前连招阶段的伤害倍率 (按本次攻击的输入选择招式)
      */
     public double getDamageMultiplier(Player player, WeaponManager.WeaponData data) {
-        if (!data.comboEnabled || data.comboSteps.isEmpty()) return 1.0;
-        
-        int stage = comboStage.getOrDefault(player.getUniqueId(), 0);
-        if (stage >= data.comboSteps.size()) stage = 0; // Safety
-        
-        return data.comboSteps.get(stage).damageMult;
+        ComboTable combo = data.combo;
+        if (combo == null) return 1.0;
+        return combo.damageMult(combo.cell(plugin.getCombatStates().get(player).comboStage, input(player)));
+    }
+
+    /**
+     * 玩家本次攻击的输入类型
+     * 原版没有独立的重攻击按键，下落中的攻击 (原版暴击的条件) 视为重攻击
+     */
+    static ComboTable.Input input(Player player) {
+        if (player.getFallDistance() > 0.0f && !player.isOnGround()) return ComboTable.Input.HEAVY;
+        if (player.isSprinting()) return ComboTable.Input.SPRINT;
+        if (player.isSneaking()) return ComboTable.Input.SNEAK;
+        return ComboTable.Input.LIGHT;
     }
 
     /**
      * 重置连招状态
      * 将连招阶段归零，并恢复武器模型为初始状态
      */
-    private void resetCombo(Player player, WeaponManager.WeaponData data) {
-        UUID uuid = player.getUniqueId();
-        comboStage.remove(uuid);
-        lastAttackTime.remove(uuid);
-        lastComboUpdate.remove(uuid);
-        resetTasks.remove(uuid);
+    private void resetCombo(PlayerCombatState state) {
+        Player player = state.player;
+        WeaponManager.WeaponData data = state.comboWeapon;
+        state.clearCombo();
+        if (data == null || !player.isOnline()) return;
         
         // Reset Model to base
         ItemStack mainHand = player.getInventory().getItemInMainHand();
@@ -129,15 +116,15 @@ public class ComboManager {
         ItemMeta meta = item.getItemMeta();
         
         if (actionBar != null) {
-            player.spigot().sendMessage(net.md_5.bungee.api.ChatMessageType.ACTION_BAR, new net.md_5.bungee.api.chat.TextComponent(actionBar));
+            plugin.getHud().flash(player, HudCompositor.Channel.COMBO, actionBar, 20);
         }
         
         // 尝试读取 Base ID
         int baseId = -1;
         
         // 优先从 PDC 读取
-        if (meta.getPersistentDataContainer().has(new org.bukkit.NamespacedKey(plugin, "hana_weapon_id"), org.bukkit.persistence.PersistentDataType.INTEGER)) {
-            baseId = meta.getPersistentDataContainer().get(new org.bukkit.NamespacedKey(plugin, "hana_weapon_id"), org.bukkit.persistence.PersistentDataType.INTEGER);
+        if (meta.getPersistentDataContainer().has(weaponManager.getWeaponIdKey(), org.bukkit.persistence.PersistentDataType.INTEGER)) {
+            baseId = meta.getPersistentDataContainer().get(weaponManager.getWeaponIdKey(), org.bukkit.persistence.PersistentDataType.INTEGER);
         }
         
         // 如果 PDC 没读到，或者读到的 ID 看起来像是一个变体 ID (大于 1000000)，尝试修正
@@ -154,7 +141,7 @@ public class ComboManager {
         
         // 确保写入正确的 Base ID 到 NBT，防止下次读错
         if (baseId > 0) {
-            meta.getPersistentDataContainer().set(new org.bukkit.NamespacedKey(plugin, "hana_weapon_id"), org.bukkit.persistence.PersistentDataType.INTEGER, baseId);
+            meta.getPersistentDataContainer().set(weaponManager.getWeaponIdKey(), org.bukkit.persistence.PersistentDataType.INTEGER, baseId);
         }
 
         if (baseId > 0) {
@@ -0,0 +1,131 @@
+package xyz.hanamae.hanaWeapons;
+
+import org.bukkit.Bukkit;
+import org.bukkit.scheduler.BukkitTask;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * 连招重置时间轮 (hashed timing wheel)
+ * 截止时间直接写在 PlayerCombatState.comboResetTick 上，每次挥砍只改这个字段，不再取消/新建 BukkitTask。
+ * 时间轮每 tick 处理一个槽位：到期的条目批量重置，截止时间被推后的条目重新放入对应槽位。
+ * 超过一圈的截止时间会在转过一圈后再次检查，因此槽位数不限制最长时间。
+ */
+public class ComboResetWheel {
+
+    private static final int SLOTS = 64; // 必须是 2 的幂
+    private static final int MASK = SLOTS - 1;
+
+    private final HanaWeapons plugin;
+    private final Consumer<PlayerCombatState> onExpire;
+
+    @SuppressWarnings("unchecked")
+    private final List<PlayerCombatState>[] slots = new List[SLOTS];
+    private List<PlayerCombatState> spare = new ArrayList<>();
+    private int lastTick;
+    private int size;
+    private BukkitTask task;
+
+    // 统计：新加入 / 原地更新截止时间 / 到期重置
+    private long insertCount;
+    private long updateCount;
+    private long expireCount;
+
+    public ComboResetWheel(HanaWeapons plugin, Consumer<PlayerCombatState> onExpire) {
+        this.plugin = plugin;
+        this.onExpire = onExpire;
+        for (int i = 0; i < SLOTS; i++) {
+            slots[i] = new ArrayList<>();
+        }
+    }
+
+    public void start() {
+        if (task == null) {
+            lastTick = Bukkit.getCurrentTick();
+            task = Bukkit.getScheduler().runTaskTimer(plugin, this::advance, 1L, 1L);
+        }
+    }
+
+    public void stop() {
+        if (task != null) {
+            task.cancel();
+            task = null;
+        }
+        for (List<PlayerCombatState> slot : slots) {
+            for (PlayerCombatState state : slot) state.comboQueued = false;
+            slot.clear();
+        }
+        size = 0;
+    }
+
+    /**
+     * 设置 (或推后) 玩家的连招重置时间
+     * @param delayTicks 距离现在的 tick 数
+     */
+    public void schedule(PlayerCombatState state, long delayTicks) {
+        int deadline = Bukkit.getCurrentTick() + (int) Math.max(1, delayTicks);
+        state.comboResetTick = deadline;
+        if (state.comboQueued) {
+            updateCount++; // 已在时间轮中：只改截止时间，到槽位时再处理
+            return;
+        }
+        state.comboQueued = true;
+        slots[deadline & MASK].add(state);
+        size++;
+        insertCount++;
+    }
+
+    private void advance() {
+        int now = Bukkit.getCurrentTick();
+        // 服务器卡顿时补齐错过的槽位 (最多一圈)
+        int from = Math.max(lastTick + 1, now - MASK);
+        for (int tick = from; tick <= now; tick++) {
+            processSlot(tick, now);
+        }
+        lastTick = now;
+    }
+
+    private void processSlot(int tick, int now) {
+        int index = tick & MASK;
+        List<PlayerCombatState> batch = slots[index];
+        if (batch.isEmpty()) return;
+
+        // 换出当前槽位，被推后的条目可能重新落回同一个槽位
+        slots[index] = spare;
+        for (PlayerCombatState state : batch) {
+            int deadline = state.comboResetTick;
+            if (deadline == 0) {
+                // 已被清除 (玩家退出或连招已重置)
+                state.comboQueued = false;
+                size--;
+            } else if (deadline <= now) {
+                state.comboQueued = false;
+                size--;
+                expireCount++;
+                onExpire.accept(state);
+            } else {
+                slots[deadline & MASK].add(state);
+            }
+        }
+        batch.clear();
+        spare = batch;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public long getInsertCount() {
+        return insertCount;
+    }
+
+    public long getUpdateCount() {
+        return updateCount;
+    }
+
+    public long getExpireCount() {
+        return expireCount;
+    }
+}
@@ -0,0 +1,119 @@
+package xyz.hanamae.hanaWeapons;
+
+import xyz.hanamae.hanaWeapons.WeaponManager.ComboStep;
+
+import java.util.List;
+
+/**
+ * 编译后的连招转移表
+ * 加载武器时把 combo.steps 展开成 (阶段, 输入) → (执行的招式, 下一阶段, 姿态模型) 的扁平 int 数组，
+ * 攻击时只需一次下标计算，分支连招和线性连招的开销相同。
+ * 招式 = 本次攻击实际执行的步骤：轻攻击执行当前阶段的步骤，其他输入在步骤配置了 branches 时改为执行分支目标步骤。
+ */
+public final class ComboTable {
+
+    /**
+     * 攻击输入
+     */
+    public enum Input {
+        LIGHT,  // 普通攻击
+        HEAVY,  // 下落中攻击 (原版暴击的条件)
+        SNEAK,  // 潜行攻击
+        SPRINT; // 疾跑攻击
+
+        private static final Input[] VALUES = values();
+    }
+
+    static final int INPUTS = Input.VALUES.length;
+
+    private final int stages;
+    // 以下按 stage * INPUTS + input 索引
+    private final int[] step;
+    private final int[] next;
+    private final int[] pose;
+    // 以下按招式 (步骤) 索引
+    private final double[] damageMult;
+    private final String[] actionBar;
+    private final long[] resetTicks;
+
+    private ComboTable(int stages) {
+        this.stages = stages;
+        this.step = new int[stages * INPUTS];
+        this.next = new int[stages * INPUTS];
+        this.pose = new int[stages * INPUTS];
+        this.damageMult = new double[stages];
+        this.actionBar = new String[stages];
+        this.resetTicks = new long[stages];
+    }
+
+    /**
+     * 编译连招步骤 (步骤列表为空时返回 null)
+     * @param defaultResetTime 步骤没有单独配置 reset_time 时使用的重置时间 (毫秒)
+     */
+    static ComboTable compile(List<ComboStep> steps, int defaultResetTime) {
+        int n = steps.size();
+        if (n == 0) return null;
+        ComboTable table = new ComboTable(n);
+        for (int s = 0; s < n; s++) {
+            ComboStep config = steps.get(s);
+            table.damageMult[s] = config.damageMult;
+            table.actionBar[s] = config.actionBar;
+            int resetTime = config.resetTime >= 0 ? config.resetTime : defaultResetTime;
+            table.resetTicks[s] = (long) (resetTime / 50.0);
+        }
+        for (int s = 0; s < n; s++) {
+            ComboStep config = steps.get(s);
+            for (Input input : Input.VALUES) {
+                int target = config.branches[input.ordinal()];
+                // 没有分支 (或分支无效) 时按轻攻击处理
+                int performed = target >= 0 && target < n ? target : s;
+                int nextStep = steps.get(performed).nextStep;
+                int cell = s * INPUTS + input.ordinal();
+                table.step[cell] = performed;
+                // 下一阶段：步骤的 next_step，未配置时 +1 循环
+                table.next[cell] = nextStep >= 0 && nextStep < n ? nextStep : (performed + 1) % n;
+                table.pose[cell] = steps.get(performed).poseModelAdd;
+            }
+        }
+        return table;
+    }
+
+    /**
+     * (阶段, 输入) 对应的表格下标，阶段超出范围时 (重载后步骤变少) 从第一阶段开始
+     */
+    int cell(int stage, Input input) {
+        if (stage < 0 || stage >= stages) stage = 0;
+        return stage * INPUTS + input.ordinal();
+    }
+
+    /**
+     * 本次攻击执行的招式 (步骤下标)
+     */
+    int step(int cell) {
+        return step[cell];
+    }
+
+    int next(int cell) {
+        return next[cell];
+    }
+
+    int pose(int cell) {
+        return pose[cell];
+    }
+
+    double damageMult(int cell) {
+        return damageMult[step[cell]];
+    }
+
+    String actionBar(int cell) {
+        return actionBar[step[cell]];
+    }
+
+    long resetTicks(int cell) {
+        return resetTicks[step[cell]];
+    }
+
+    public int getStages() {
+        return stages;
+    }
+}
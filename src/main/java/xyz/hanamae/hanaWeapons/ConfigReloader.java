@@ -0,0 +1,159 @@
+package xyz.hanamae.hanaWeapons;
+
+import org.bukkit.Bukkit;
+import org.bukkit.command.CommandSender;
+import org.bukkit.configuration.file.FileConfiguration;
+
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.logging.Level;
+
+/**
+ * 配置重载 (/hw reload)
+ * 在重载线程中读取并解析 posture.yml、weapons.yml 和 skills.yml，生成新的快照；
+ * 解析完成后回到主线程一次性替换，解析期间战斗逻辑继续使用旧配置。
+ * 解析失败时旧配置保持不变，错误发送给执行重载的人。
+ * 热重载 (ConfigWatcher) 也在同一个单线程的重载线程中解析：两种重载依次执行，结果按顺序在主线程启用，
+ * 不会出现较早的解析结果覆盖较新的配置。
+ */
+public class ConfigReloader {
+
+    // 最多向执行者显示的警告条数 (完整列表见控制台)
+    private static final int MAX_REPORTED_PROBLEMS = 5;
+
+    private final HanaWeapons plugin;
+    private final ExecutorService executor;
+    private boolean running; // 只在主线程读写
+    private long parsedGeneration;  // 只在重载线程读写
+    private long appliedGeneration; // 只在主线程读写
+
+    public ConfigReloader(HanaWeapons plugin) {
+        this.plugin = plugin;
+        this.executor = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "HanaWeapons-Reload");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * 在重载线程中执行解析任务 (与其他重载依次执行)
+     * @return 插件已关闭时返回 false
+     */
+    boolean submit(Runnable task) {
+        try {
+            executor.execute(task);
+            return true;
+        } catch (RejectedExecutionException e) {
+            return false;
+        }
+    }
+
+    /**
+     * 重载线程：为一次解析分配代数 (按解析完成的顺序递增)
+     */
+    long nextGeneration() {
+        return ++parsedGeneration;
+    }
+
+    /**
+     * 主线程：启用前检查，已经启用过更新的解析结果时返回 false
+     */
+    boolean beginApply(long generation) {
+        if (generation <= appliedGeneration) return false;
+        appliedGeneration = generation;
+        return true;
+    }
+
+    /**
+     * 插件关闭时停止重载线程
+     */
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * 开始一次重载，完成后把结果发送给 sender
+     * @return 已有重载正在进行时返回 false
+     */
+    public boolean reload(CommandSender sender) {
+        if (running) return false;
+        long start = System.nanoTime();
+        if (!submit(() -> parse(sender, start))) return false;
+        running = true;
+        return true;
+    }
+
+    public boolean isRunning() {
+        return running;
+    }
+
+    /**
+     * 重载线程：解析配置文件
+     * 无论成功与否 (包括 Error) 都会回到主线程执行 apply 或 fail，保证 running 被重置
+     */
+    private void parse(CommandSender sender, long start) {
+        WeaponManager.ConfigSnapshot snapshot;
+        FileConfiguration skills;
+        long generation = nextGeneration();
+        try {
+            snapshot = plugin.getWeaponManager().parse();
+            skills = plugin.getSkillManager().readConfig();
+        } catch (Throwable e) {
+            plugin.getLogger().log(Level.SEVERE, "Failed to parse configuration, keeping the previous one", e);
+            if (plugin.isEnabled()) Bukkit.getScheduler().runTask(plugin, () -> fail(sender, e));
+            return;
+        }
+        long parseNanos = System.nanoTime() - start;
+        try {
+            plugin.getWeaponManager().getCache().save(snapshot); // 下次启动直接读取缓存
+        } finally {
+            if (plugin.isEnabled()) {
+                Bukkit.getScheduler().runTask(plugin, () -> apply(sender, snapshot, skills, generation, start, parseNanos));
+            }
+        }
+    }
+
+    /**
+     * 主线程：替换为新的配置
+     */
+    private void apply(CommandSender sender, WeaponManager.ConfigSnapshot snapshot, FileConfiguration skills, long generation, long start, long parseNanos) {
+        running = false;
+        if (!beginApply(generation)) return; // 依次执行时不会发生
+        long applyStart = System.nanoTime();
+        plugin.reloadConfig();
+        plugin.getEffects().loadConfig(plugin.getConfig());
+        plugin.getWeaponManager().getCache().loadConfig(plugin.getConfig());
+        plugin.getWatcher().restart(); // hot-reload 设置可能已改变
+        plugin.getWeaponManager().apply(snapshot);
+        plugin.getHandCache().invalidateAll(); // 旧的 WeaponData 已作废
+        plugin.getHud().precompute(plugin.getWeaponManager());
+        plugin.getSkillManager().applyConfig(skills);
+        long end = System.nanoTime();
+
+        sender.sendMessage(String.format("§aConfiguration reloaded: %d weapons in %.1f ms (parse %.1f ms off-thread, apply %.1f ms on main thread).",
+                snapshot.getRegistry().size(), millis(end - start), millis(parseNanos), millis(end - applyStart)));
+        List<String> problems = snapshot.getProblems();
+        if (!problems.isEmpty()) {
+            sender.sendMessage("§e" + problems.size() + " warning(s):");
+            for (int i = 0; i < Math.min(problems.size(), MAX_REPORTED_PROBLEMS); i++) {
+                sender.sendMessage("§e - " + problems.get(i));
+            }
+            if (problems.size() > MAX_REPORTED_PROBLEMS) {
+                sender.sendMessage("§e ... see the console for the full list.");
+            }
+        }
+    }
+
+    private void fail(CommandSender sender, Throwable error) {
+        running = false;
+        sender.sendMessage("§cReload failed: " + (error.getMessage() != null ? error.getMessage() : error.toString()));
+        sender.sendMessage("§cThe previous configuration is still active.");
+    }
+
+    private static double millis(long nanos) {
+        return nanos / 1_000_000.0;
+    }
+}
@@ -0,0 +1,272 @@
+package xyz.hanamae.hanaWeapons;
+
+import org.bukkit.Bukkit;
+import org.bukkit.configuration.file.FileConfiguration;
+import org.bukkit.entity.Player;
+import xyz.hanamae.hanaWeapons.WeaponManager.WeaponData;
+
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+
+/**
+ * 配置文件热重载 (config.yml 的 hot-reload，默认关闭)
+ * 后台线程监视数据目录和 weapons/ 目录，posture.yml / weapons.yml / skills.yml 或武器分片文件保存后，
+ * 等待 debounce-ms 内没有新的写入再重载。只重新解析修改过的文件，在主线程启用前与当时生效的注册表逐把武器比较：
+ * 未变化的武器沿用原对象，只有手持被修改或删除的武器的玩家会刷新手持物品。结果发送给在线管理员。
+ * 解析在 ConfigReloader 的重载线程中进行，与 /hw reload 依次执行；YAML 写错 (例如编辑器保存到一半) 或解析结果
+ * 会删除全部武器时，当前配置保持不变。
+ */
+public class ConfigWatcher {
+
+    private static final Set<String> FILES = Set.of("posture.yml", "weapons.yml", "skills.yml");
+    // 发给管理员的变更明细最多显示的行数 (完整列表见控制台)
+    private static final int MAX_REPORTED_LINES = 8;
+
+    private final HanaWeapons plugin;
+    // 只在主线程读写；监视线程只使用启动时传入的 WatchService，restart() 不会影响正在退出的旧线程
+    private WatchService watchService;
+    private Thread thread;
+    private volatile long debounceMs = 500;
+
+    public ConfigWatcher(HanaWeapons plugin) {
+        this.plugin = plugin;
+    }
+
+    /**
+     * 按 config.yml 的设置启动监视 (未启用时什么也不做)
+     */
+    public void start() {
+        FileConfiguration config = plugin.getConfig();
+        if (!config.getBoolean("hot-reload.enabled", false)) return;
+        debounceMs = Math.max(50L, config.getLong("hot-reload.debounce-ms", 500L));
+        WatchService watch = null;
+        WatchKey weaponsKey;
+        try {
+            watch = FileSystems.getDefault().newWatchService();
+            plugin.getDataFolder().toPath().register(watch, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY);
+            weaponsKey = watchWeaponsDirectory(watch);
+        } catch (IOException e) {
+            plugin.getLogger().warning("Failed to start config hot reload: " + e.getMessage());
+            if (watch != null) {
+                try {
+                    watch.close();
+                } catch (IOException ignored) {
+                }
+            }
+            return;
+        }
+        WatchService service = watch;
+        watchService = service;
+        thread = new Thread(() -> run(service, weaponsKey), "HanaWeapons-ConfigWatcher");
+        thread.setDaemon(true);
+        thread.start();
+        plugin.getLogger().info("Watching " + FILES + " for changes (debounce " + debounceMs + " ms).");
+    }
+
+    public void stop() {
+        if (watchService == null) return;
+        try {
+            watchService.close(); // 监视线程随之退出
+        } catch (IOException ignored) {
+        }
+        thread.interrupt();
+        watchService = null;
+        thread = null;
+    }
+
+    /**
+     * 监视 weapons/ 目录 (分片文件的删除也会触发重载)
+     * @return 目录不存在时返回 null
+     */
+    private WatchKey watchWeaponsDirectory(WatchService watch) throws IOException {
+        Path directory = plugin.getDataFolder().toPath().resolve("weapons");
+        if (!Files.isDirectory(directory)) return null;
+        return directory.register(watch, StandardWatchEventKinds.ENTRY_CREATE,
+                StandardWatchEventKinds.ENTRY_MODIFY, StandardWatchEventKinds.ENTRY_DELETE);
+    }
+
+    /**
+     * 重新读取 config.yml 的设置后调用
+     */
+    public void restart() {
+        stop();
+        start();
+    }
+
+    // ================== 监视线程 ==================
+
+    /**
+     * @param weaponsKey weapons/ 目录的 WatchKey (不存在时为 null，运行期间创建后由本线程注册)
+     */
+    private void run(WatchService watch, WatchKey weaponsKey) {
+        Set<String> changed = new TreeSet<>();
+        long lastChange = 0;
+        try {
+            while (true) {
+                WatchKey key;
+                if (changed.isEmpty()) {
+                    key = watch.take();
+                } else {
+                    long wait = lastChange + debounceMs - System.currentTimeMillis();
+                    key = wait > 0 ? watch.poll(wait, TimeUnit.MILLISECONDS) : null;
+                }
+                if (key == null) {
+                    // 防抖时间内没有新的写入，交给重载线程 (与 /hw reload 依次执行)
+                    Set<String> files = new TreeSet<>(changed);
+                    changed.clear();
+                    if (!plugin.getReloader().submit(() -> reload(files))) return;
+                    continue;
+                }
+                boolean shard = key == weaponsKey;
+                for (WatchEvent<?> event : key.pollEvents()) {
+                    if (!(event.context() instanceof Path path)) continue;
+                    String name = path.toString();
+                    if (shard ? name.endsWith(".yml") : FILES.contains(name)) {
+                        changed.add(shard ? "weapons/" + name : name);
+                        lastChange = System.currentTimeMillis();
+                    } else if (!shard && weaponsKey == null && name.equals("weapons")) {
+                        weaponsKey = watchWeaponsDirectory(watch); // 运行期间新建的 weapons/ 目录
+                    }
+                }
+                key.reset();
+            }
+        } catch (IOException e) {
+            plugin.getLogger().warning("Config hot reload stopped: " + e.getMessage());
+        } catch (InterruptedException | ClosedWatchServiceException e) {
+            // 插件关闭或重新启动监视
+        }
+    }
+
+    /**
+     * 重载线程：只解析修改过的文件
+     */
+    private void reload(Set<String> files) {
+        long start = System.nanoTime();
+        long generation = plugin.getReloader().nextGeneration();
+        boolean postureChanged = files.contains("posture.yml");
+        boolean weaponsChanged = false;
+        for (String file : files) {
+            if (file.equals("weapons.yml") || file.startsWith("weapons/")) weaponsChanged = true;
+        }
+        WeaponManager.ConfigSnapshot parsed;
+        FileConfiguration skills;
+        try {
+            parsed = postureChanged || weaponsChanged ? plugin.getWeaponManager().parseIncremental() : null;
+            skills = files.contains("skills.yml") ? plugin.getSkillManager().readConfig() : null;
+        } catch (RuntimeException e) {
+            plugin.getLogger().log(Level.SEVERE, "Hot reload of " + files + " failed, keeping the previous configuration", e);
+            if (plugin.isEnabled()) {
+                Bukkit.getScheduler().runTask(plugin, () -> notifyFailure(files, e.getMessage()));
+            }
+            return;
+        }
+        long parseNanos = System.nanoTime() - start;
+        if (parsed != null) plugin.getWeaponManager().getCache().save(parsed);
+        if (plugin.isEnabled()) {
+            Bukkit.getScheduler().runTask(plugin, () -> apply(files, parsed, skills, generation, start, parseNanos));
+        }
+    }
+
+    /**
+     * 主线程：启用新快照，只刷新受影响的玩家
+     */
+    private void apply(Set<String> files, WeaponManager.ConfigSnapshot parsed, FileConfiguration skills, long generation, long start, long parseNanos) {
+        if (!plugin.getReloader().beginApply(generation)) return; // 依次执行时不会发生
+        long applyStart = System.nanoTime();
+        WeaponDiff diff = null;
+        if (parsed != null) {
+            WeaponManager weaponManager = plugin.getWeaponManager();
+            // 与此刻生效的注册表比较 (解析期间可能已经启用过 /hw reload 的结果)
+            WeaponRegistry current = weaponManager.getRegistry();
+            diff = WeaponDiff.compute(weaponManager, current, parsed);
+            if (diff.getSnapshot().getRegistry().size() == 0 && current.size() > 0) {
+                notifyFailure(files, "the result contains no weapons");
+                return;
+            }
+            weaponManager.apply(diff.getSnapshot());
+            if (!diff.isEmpty()) refreshHolders(diff);
+            // posture.yml 的 bar_length 等变化不体现在 diff 中，每次都重新生成
+            plugin.getHud().precompute(weaponManager);
+        }
+        if (skills != null) plugin.getSkillManager().applyConfig(skills);
+        long end = System.nanoTime();
+        notifyAdmins(summary(files, diff, end - start, parseNanos, end - applyStart));
+    }
+
+    /**
+     * 手持被修改或删除的武器的玩家：重新解析手持缓存，并按新数据刷新手中的物品
+     */
+    private void refreshHolders(WeaponDiff diff) {
+        if (!diff.getAdded().isEmpty()) {
+            // 新增的 ID 在缓存中是 null (之前不是 Hana 武器)，无法按对象判断，全部重新解析
+            plugin.getHandCache().invalidateAll();
+        }
+        for (PlayerCombatState state : plugin.getCombatStates().all()) {
+            if (diff.isStale(state.main) || diff.isStale(state.off)) {
+                plugin.getHandCache().invalidate(state.player);
+                plugin.getRefreshQueue().request(state.player);
+            }
+        }
+    }
+
+    private static List<String> summary(Set<String> files, WeaponDiff diff, long totalNanos, long parseNanos, long applyNanos) {
+        List<String> lines = new ArrayList<>();
+        String head = String.format("§a[HanaWeapons] Hot reload of %s in %.1f ms (parse %.1f ms off-thread, apply %.1f ms on main thread)",
+                String.join(", ", files), totalNanos / 1_000_000.0, parseNanos / 1_000_000.0, applyNanos / 1_000_000.0);
+        if (diff == null) {
+            lines.add(head + ".");
+            return lines;
+        }
+        lines.add(String.format("%s: %d added, %d removed, %d changed.", head, diff.getAdded().size(), diff.getRemoved().size(), diff.getChanged().size()));
+        for (WeaponData data : diff.getAdded()) {
+            lines.add("§7 + " + data.id + " " + data.name);
+        }
+        for (Map.Entry<WeaponData, List<String>> entry : diff.getChanged().entrySet()) {
+            lines.add("§7 ~ " + entry.getKey().id + " " + entry.getKey().name + ": " + String.join(", ", entry.getValue()));
+        }
+        for (WeaponData data : diff.getRemoved()) {
+            lines.add("§7 - " + data.id + " " + data.name);
+        }
+        int problems = diff.getSnapshot().getProblems().size();
+        if (problems > 0) {
+            lines.add("§e" + problems + " warning(s), see the console.");
+        }
+        return lines;
+    }
+
+    private void notifyFailure(Set<String> files, String reason) {
+        notifyAdmins(List.of(
+                "§cHot reload of " + String.join(", ", files) + " failed: " + reason,
+                "§cThe previous configuration is still active."));
+    }
+
+    private void notifyAdmins(List<String> lines) {
+        for (String line : lines) {
+            plugin.getLogger().info(line.replaceAll("§.", ""));
+        }
+        for (Player player : Bukkit.getOnlinePlayers()) {
+            if (!player.hasPermission("hanaweapons.admin")) continue;
+            for (int i = 0; i < lines.size(); i++) {
+                if (i == MAX_REPORTED_LINES) {
+                    player.sendMessage("§7 ... " + (lines.size() - i) + " more, see the console.");
+                    break;
+                }
+                player.sendMessage(lines.get(i));
+            }
+        }
+    }
+}
@@ -0,0 +1,238 @@
+package xyz.hanamae.hanaWeapons;
+
+import org.bukkit.entity.Entity;
+import org.bukkit.entity.LivingEntity;
+import org.bukkit.entity.Player;
+import org.bukkit.entity.Projectile;
+import org.bukkit.event.entity.EntityDamageByEntityEvent;
+import xyz.hanamae.hanaWeapons.WeaponManager.WeaponData;
+
+/**
+ * 单次伤害事件的共享上下文
+ * 同一个 EntityDamageByEntityEvent 会依次经过 WeaponListener (LOW)、SkillManager / PostureListener (HIGH)
+ * 和 StunListener (HIGHEST)。各阶段通过 HanaWeapons.getDamageContext(event) 拿到同一个对象，
+ * 攻击者武器、受害者主副手、APC、朝向点积、格挡/招架判定都在第一次读取时计算，之后直接复用。
+ * 伤害数值本身仍以 event.getDamage() 为准 (前面的阶段会修改它)。
+ */
+public final class DamageContext {
+
+    private final HanaWeapons plugin;
+    private final EntityDamageByEntityEvent event;
+    private final long time = System.currentTimeMillis();
+
+    private final Entity damager;
+    private final Player attackerPlayer;
+    private final LivingEntity attacker;
+    private final Player victimPlayer;
+
+    private PlayerCombatState attackerState;
+    private PlayerCombatState victimState;
+
+    private double apc = Double.NaN;
+    private double facingDot = Double.NaN;
+    private boolean blockingResolved;
+    private boolean victimBlocking;
+    private boolean parryResolved;
+    private WeaponData parryWeapon;
+    private boolean inParryWindow;
+
+    DamageContext(HanaWeapons plugin, EntityDamageByEntityEvent event) {
+        this.plugin = plugin;
+        this.event = event;
+        this.damager = event.getDamager();
+        this.attackerPlayer = damager instanceof Player p ? p : null;
+        this.attacker = damager instanceof LivingEntity l ? l : null;
+        this.victimPlayer = event.getEntity() instanceof Player p ? p : null;
+    }
+
+    public EntityDamageByEntityEvent getEvent() {
+        return event;
+    }
+
+    /**
+     * 事件开始处理的时间 (各阶段的时间判定使用同一个值)
+     */
+    public long getTime() {
+        return time;
+    }
+
+    // ================== 攻击者 ==================
+
+    public Entity getDamager() {
+        return damager;
+    }
+
+    /**
+     * 攻击者是玩家时返回该玩家，否则为 null
+     */
+    public Player getAttackerPlayer() {
+        return attackerPlayer;
+    }
+
+    /**
+     * 攻击者是生物时返回该生物 (包括玩家)，投射物等为 null
+     */
+    public LivingEntity getAttacker() {
+        return attacker;
+    }
+
+    public PlayerCombatState getAttackerState() {
+        if (attackerState == null && attackerPlayer != null) {
+            attackerState = plugin.getHandCache().resolve(plugin.getCombatStates().get(attackerPlayer));
+        }
+        return attackerState;
+    }
+
+    /**
+     * 攻击者主手的 Hana 武器 (非玩家或不是 Hana 武器时为 null)
+     */
+    public WeaponData getAttackerWeapon() {
+        PlayerCombatState state = getAttackerState();
+        return state != null ? state.main : null;
+    }
+
+    /**
+     * 攻击者的护甲穿透系数 (包括技能期间的额外穿甲)
+     */
+    public double getAttackerAPC() {
+        if (Double.isNaN(apc)) {
+            WeaponManager weaponManager = plugin.getWeaponManager();
+            if (attackerPlayer != null) {
+                PlayerCombatState state = getAttackerState();
+                apc = weaponManager.getPlayerArmorPenetration(attackerPlayer, state.main) + state.skillBonusAP;
+            } else if (attacker != null) {
+                apc = weaponManager.getEntityArmorPenetration(attacker);
+            } else if (damager instanceof Projectile proj) {
+                apc = weaponManager.getProjectileArmorPenetration(proj.getType());
+            } else {
+                apc = 1.0;
+            }
+        }
+        return apc;
+    }
+
+    /**
+     * 攻击者是否处于僵直 (招架会在 HIGH 阶段使攻击者僵直，所以只在 HIGHEST 阶段读取)
+     */
+    public boolean isAttackerStunned() {
+        return attacker != null && plugin.getPostureManager().isStunned(attacker);
+    }
+
+    // ================== 受害者 ==================
+
+    public Player getVictimPlayer() {
+        return victimPlayer;
+    }
+
+    public PlayerCombatState getVictimState() {
+        if (victimState == null && victimPlayer != null) {
+            victimState = plugin.getHandCache().resolve(plugin.getCombatStates().get(victimPlayer));
+        }
+        return victimState;
+    }
+
+    public WeaponData getVictimMain() {
+        PlayerCombatState state = getVictimState();
+        return state != null ? state.main : null;
+    }
+
+    public WeaponData getVictimOff() {
+        PlayerCombatState state = getVictimState();
+        return state != null ? state.off : null;
+    }
+
+    /**
+     * 受害者水平视线与指向攻击者方向的点积 (> 0 表示面对攻击者)
+     */
+    public double getFacingDot() {
+        if (Double.isNaN(facingDot)) {
+            facingDot = CombatGeometry.facingDot(event.getEntity(), damager);
+        }
+        return facingDot;
+    }
+
+    /**
+     * 受害者玩家是否处于格挡状态：原版格挡 OR 举手 OR 插件记录的近期格挡动作 (不含朝向和破防判定)
+     */
+    public boolean isVictimBlocking() {
+        if (!blockingResolved) {
+            blockingResolved = true;
+            victimBlocking = victimPlayer != null
+                    && (victimPlayer.isBlocking() || victimPlayer.isHandRaised() || plugin.isBlockingOrRecentlyBlocking(getVictimState()));
+        }
+        return victimBlocking;
+    }
+
+    /**
+     * 受害者用于招架的武器 (主手优先)，没有时为 null
+     */
+    public WeaponData getParryWeapon() {
+        resolveParry();
+        return parryWeapon;
+    }
+
+    /**
+     * 是否处于招架武器的判定窗口内 (从开始格挡算起，不含朝向判定)
+     */
+    public boolean isInParryWindow() {
+        resolveParry();
+        return inParryWindow;
+    }
+
+    private void resolveParry() {
+        if (parryResolved) return;
+        parryResolved = true;
+        PlayerCombatState state = getVictimState();
+        if (state == null) return;
+
+        if (state.main != null && state.main.mechanicParry) parryWeapon = state.main;
+        else if (state.off != null && state.off.mechanicParry) parryWeapon = state.off;
+
+        if (parryWeapon != null) {
+            long diff = time - state.blockStartTime;
+            inParryWindow = diff >= 0 && diff <= parryWeapon.parryWindow;
+        }
+    }
+
+    /**
+     * 每个事件只创建一次上下文
+     * 伤害处理中可能嵌套触发新的伤害事件 (例如技能造成的伤害)，所以保留最近几个事件的上下文。
+     * 事件在 MONITOR 阶段结束后清空对应的槽位，不会在事件之后继续引用实体和战斗状态。
+     */
+    static final class Cache implements org.bukkit.event.Listener {
+        private static final int SIZE = 4;
+
+        private final HanaWeapons plugin;
+        private final EntityDamageByEntityEvent[] events = new EntityDamageByEntityEvent[SIZE];
+        private final DamageContext[] contexts = new DamageContext[SIZE];
+        private int next;
+
+        Cache(HanaWeapons plugin) {
+            this.plugin = plugin;
+        }
+
+        DamageContext get(EntityDamageByEntityEvent event) {
+            for (int i = 0; i < SIZE; i++) {
+                if (events[i] == event) return contexts[i];
+            }
+            DamageContext context = new DamageContext(plugin, event);
+            events[next] = event;
+            contexts[next] = context;
+            next = (next + 1) % SIZE;
+            return context;
+        }
+
+        /**
+         * 所有阶段处理完毕后释放该事件的上下文 (取消的事件也会经过这里)
+         */
+        @org.bukkit.event.EventHandler(priority = org.bukkit.event.EventPriority.MONITOR)
+        public void onDamageDone(EntityDamageByEntityEvent event) {
+            for (int i = 0; i < SIZE; i++) {
+                if (events[i] == event) {
+                    events[i] = null;
+                    contexts[i] = null;
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,138 @@
+package xyz.hanamae.hanaWeapons;
+
+import org.bukkit.Material;
+import org.bukkit.Sound;
+import org.bukkit.entity.Player;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
+import org.bukkit.event.Listener;
+import org.bukkit.event.player.PlayerQuitEvent;
+import org.bukkit.inventory.EquipmentSlot;
+import org.bukkit.inventory.ItemStack;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * 武器耐久写回队列
+ * 格挡/招架时只在 PlayerCombatState 上累计主副手的耐久消耗，下一次战斗 Tick 时每个手持位置只读写一次 ItemMeta。
+ * 耐久附魔按每点消耗单独判定，与逐次扣除的结果分布相同；物品在此期间被换掉 (类型不同) 时丢弃累计值。
+ */
+public class DurabilityQueue implements Listener {
+
+    private final List<PlayerCombatState> dirty = new ArrayList<>();
+
+    // 统计：累计的消耗次数 / 实际写入物品的次数
+    private long requestedCount;
+    private long writeCount;
+
+    public DurabilityQueue(HanaWeapons plugin) {
+        plugin.getCombatTicker().registerGlobal(this::flush);
+    }
+
+    /**
+     * 记录一次耐久消耗 (slot 为 HAND 或 OFF_HAND)
+     */
+    public void damage(PlayerCombatState state, EquipmentSlot slot, int amount) {
+        ItemStack item = state.player.getInventory().getItem(slot);
+        if (item == null || item.getType().getMaxDurability() <= 0) return;
+        requestedCount++;
+
+        if (slot == EquipmentSlot.OFF_HAND) {
+            if (state.durabilityOffType != item.getType()) state.durabilityOff = 0;
+            state.durabilityOffType = item.getType();
+            state.durabilityOff += amount;
+        } else {
+            if (state.durabilityMainType != item.getType()) state.durabilityMain = 0;
+            state.durabilityMainType = item.getType();
+            state.durabilityMain += amount;
+        }
+        if (!state.durabilityQueued) {
+            state.durabilityQueued = true;
+            dirty.add(state);
+        }
+    }
+
+    /**
+     * 写回所有累计的消耗 (每 tick 及插件关闭时调用)
+     */
+    void flush() {
+        if (dirty.isEmpty()) return;
+        for (int i = 0, n = dirty.size(); i < n; i++) {
+            apply(dirty.get(i));
+        }
+        dirty.clear();
+    }
+
+    /**
+     * 将累计的消耗写入物品 (玩家退出时也会立即调用)
+     */
+    private void apply(PlayerCombatState state) {
+        state.durabilityQueued = false;
+        Player player = state.player;
+        if (state.durabilityMain > 0) {
+            write(player, EquipmentSlot.HAND, state.durabilityMainType, state.durabilityMain);
+        }
+        if (state.durabilityOff > 0) {
+            write(player, EquipmentSlot.OFF_HAND, state.durabilityOffType, state.durabilityOff);
+        }
+        state.durabilityMain = 0;
+        state.durabilityOff = 0;
+        state.durabilityMainType = null;
+        state.durabilityOffType = null;
+    }
+
+    private void write(Player player, EquipmentSlot slot, Material type, int amount) {
+        ItemStack item = player.getInventory().getItem(slot);
+        if (item == null || item.getType() != type) return; // 已换成其他物品
+
+        // 模拟耐久附魔 (Unbreaking)：每点消耗有 1/(等级+1) 的概率生效
+        int level = item.getEnchantmentLevel(org.bukkit.enchantments.Enchantment.UNBREAKING);
+        int applied = amount;
+        if (level > 0) {
+            applied = 0;
+            ThreadLocalRandom random = ThreadLocalRandom.current();
+            for (int i = 0; i < amount; i++) {
+                if (random.nextInt(level + 1) == 0) applied++;
+            }
+            if (applied == 0) return;
+        }
+        if (!(item.getItemMeta() instanceof org.bukkit.inventory.meta.Damageable damageable)) return;
+
+        writeCount++;
+        int newDamage = damageable.getDamage() + applied;
+        if (newDamage >= type.getMaxDurability()) {
+            item.setAmount(0); // 武器损毁
+            player.playSound(player.getLocation(), Sound.ENTITY_ITEM_BREAK, 1.0f, 1.0f);
+        } else {
+            damageable.setDamage(newDamage);
+            item.setItemMeta(damageable);
+        }
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onQuit(PlayerQuitEvent event) {
+        // 状态在同一事件中随后释放，这里先把未写入的消耗写回物品
+        for (int i = 0, n = dirty.size(); i < n; i++) {
+            PlayerCombatState state = dirty.get(i);
+            if (state.player == event.getPlayer()) {
+                apply(state);
+                dirty.remove(i);
+                return;
+            }
+        }
+    }
+
+    public int getPendingCount() {
+        return dirty.size();
+    }
+
+    public long getRequestedCount() {
+        return requestedCount;
+    }
+
+    public long getWriteCount() {
+        return writeCount;
+    }
+}
@@ -0,0 +1,225 @@
+package xyz.hanamae.hanaWeapons;
+
+import org.bukkit.Location;
+import org.bukkit.Particle;
+import org.bukkit.Sound;
+import org.bukkit.World;
+import org.bukkit.configuration.file.FileConfiguration;
+import org.bukkit.entity.Entity;
+import org.bukkit.entity.LivingEntity;
+import org.bukkit.entity.Player;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 战斗特效分发器 (格挡、招架、横扫、冲刺的音效和粒子)
+ * 各模块在事件中只提交请求，下一次战斗 Tick 时统一发送：
+ * 同一 tick 内、相距不超过 merge-distance 的相同音效/粒子合并为一个，
+ * 只发给 view-radius 范围内的玩家，且每位玩家每 tick 最多收到 max-per-viewer 个特效。
+ * 玩家自己的提示音 (player.playSound) 不经过这里。
+ */
+public class EffectDispatcher {
+
+    /**
+     * 一个待发送的特效 (对象在 tick 之间复用)
+     */
+    private static final class Effect {
+        World world;
+        double x, y, z;
+        Sound sound;       // 音效 (与 particle 二选一)
+        float volume;
+        float pitch;
+        Particle particle; // 粒子
+        int count;
+        double spread;
+    }
+
+    private final List<Effect> pending = new ArrayList<>();
+    private final List<Effect> pool = new ArrayList<>();
+    private final List<World> worlds = new ArrayList<>();
+    // 复用的 Location 用完后清空 world，不会让已卸载的世界保持可达
+    private final Location scratch = new Location(null, 0, 0, 0);
+    private final Location viewerLocation = new Location(null, 0, 0, 0);
+    private final Location entityLocation = new Location(null, 0, 0, 0);
+
+    private double viewRadiusSq = 32.0 * 32.0;
+    private double mergeDistanceSq = 1.0;
+    private int maxPerViewer = 16;
+
+    // 统计：提交 / 合并 / 实际发送 (按玩家计) / 因上限被丢弃 (按玩家计)
+    private long requestedCount;
+    private long mergedCount;
+    private long sentCount;
+    private long droppedCount;
+
+    public EffectDispatcher(HanaWeapons plugin) {
+        loadConfig(plugin.getConfig());
+        plugin.getCombatTicker().registerGlobal(this::flush);
+    }
+
+    /**
+     * 读取 config.yml 中的 effects 设置 (启动和重载时调用)
+     */
+    public void loadConfig(FileConfiguration config) {
+        double viewRadius = config.getDouble("effects.view-radius", 32.0);
+        double mergeDistance = config.getDouble("effects.merge-distance", 1.0);
+        viewRadiusSq = viewRadius * viewRadius;
+        mergeDistanceSq = mergeDistance * mergeDistance;
+        maxPerViewer = Math.max(1, config.getInt("effects.max-per-viewer", 16));
+    }
+
+    // ================== 提交 ==================
+
+    public void sound(Location location, Sound sound, float volume, float pitch) {
+        sound(location.getWorld(), location.getX(), location.getY(), location.getZ(), sound, volume, pitch);
+    }
+
+    /**
+     * 在实体脚下播放音效 (不创建 Location)
+     */
+    public void sound(Entity entity, Sound sound, float volume, float pitch) {
+        Location at = entity.getLocation(entityLocation);
+        World world = at.getWorld();
+        at.setWorld(null);
+        sound(world, at.getX(), at.getY(), at.getZ(), sound, volume, pitch);
+    }
+
+    public void sound(World world, double x, double y, double z, Sound sound, float volume, float pitch) {
+        if (sound == null) return;
+        requestedCount++;
+        Effect merged = findNearby(world, x, y, z, sound, null);
+        if (merged != null) {
+            // 合并：取较大的音量，保留先到的音调
+            merged.volume = Math.max(merged.volume, volume);
+            mergedCount++;
+            return;
+        }
+        Effect effect = obtain(world, x, y, z);
+        effect.sound = sound;
+        effect.volume = volume;
+        effect.pitch = pitch;
+    }
+
+    public void particle(Location location, Particle particle, int count, double spread) {
+        particle(location.getWorld(), location.getX(), location.getY(), location.getZ(), particle, count, spread);
+    }
+
+    /**
+     * 在实体眼前 distance 格处生成粒子 (不创建 Location / Vector)
+     */
+    public void particleAhead(LivingEntity entity, double distance, Particle particle, int count, double spread) {
+        Location at = entity.getLocation(entityLocation);
+        float yaw = at.getYaw(), pitch = at.getPitch();
+        World world = at.getWorld();
+        at.setWorld(null);
+        particle(world,
+                at.getX() + CombatGeometry.lookX(yaw, pitch) * distance,
+                at.getY() + entity.getEyeHeight() + CombatGeometry.lookY(pitch) * distance,
+                at.getZ() + CombatGeometry.lookZ(yaw, pitch) * distance,
+                particle, count, spread);
+    }
+
+    public void particle(World world, double x, double y, double z, Particle particle, int count, double spread) {
+        if (particle == null) return;
+        requestedCount++;
+        Effect merged = findNearby(world, x, y, z, null, particle);
+        if (merged != null) {
+            // 合并：取较大的数量和扩散范围，不叠加
+            merged.count = Math.max(merged.count, count);
+            merged.spread = Math.max(merged.spread, spread);
+            mergedCount++;
+            return;
+        }
+        Effect effect = obtain(world, x, y, z);
+        effect.particle = particle;
+        effect.count = count;
+        effect.spread = spread;
+    }
+
+    private Effect findNearby(World world, double x, double y, double z, Sound sound, Particle particle) {
+        for (int i = 0, n = pending.size(); i < n; i++) {
+            Effect effect = pending.get(i);
+            if (effect.world != world || effect.sound != sound || effect.particle != particle) continue;
+            if (CombatGeometry.distanceSq(effect.x, effect.y, effect.z, x, y, z) <= mergeDistanceSq) return effect;
+        }
+        return null;
+    }
+
+    private Effect obtain(World world, double x, double y, double z) {
+        Effect effect = pool.isEmpty() ? new Effect() : pool.remove(pool.size() - 1);
+        effect.world = world;
+        effect.x = x;
+        effect.y = y;
+        effect.z = z;
+        effect.sound = null;
+        effect.particle = null;
+        pending.add(effect);
+        return effect;
+    }
+
+    // ================== 发送 ==================
+
+    private void flush() {
+        if (pending.isEmpty()) return;
+
+        for (int i = 0, n = pending.size(); i < n; i++) {
+            World world = pending.get(i).world;
+            if (!worlds.contains(world)) worlds.add(world);
+        }
+        for (World world : worlds) {
+            for (Player viewer : world.getPlayers()) {
+                sendTo(viewer, world);
+            }
+        }
+        worlds.clear();
+
+        for (Effect effect : pending) {
+            effect.world = null;
+            pool.add(effect);
+        }
+        pending.clear();
+    }
+
+    private void sendTo(Player viewer, World world) {
+        viewer.getLocation(viewerLocation);
+        double vx = viewerLocation.getX(), vy = viewerLocation.getY(), vz = viewerLocation.getZ();
+        viewerLocation.setWorld(null);
+        int sent = 0;
+        for (int i = 0, n = pending.size(); i < n; i++) {
+            Effect effect = pending.get(i);
+            if (effect.world != world) continue;
+            if (CombatGeometry.distanceSq(effect.x, effect.y, effect.z, vx, vy, vz) > viewRadiusSq) continue;
+            if (sent >= maxPerViewer) {
+                droppedCount++;
+                continue;
+            }
+            if (effect.sound != null) {
+                scratch.setWorld(world);
+                scratch.set(effect.x, effect.y, effect.z);
+                viewer.playSound(scratch, effect.sound, effect.volume, effect.pitch);
+            } else {
+                viewer.spawnParticle(effect.particle, effect.x, effect.y, effect.z, effect.count, effect.spread, effect.spread, effect.spread, 0.0);
+            }
+            sent++;
+            sentCount++;
+        }
+        scratch.setWorld(null);
+    }
+
+    public long getRequestedCount() {
+        return requestedCount;
+    }
+
+    public long getMergedCount() {
+        return mergedCount;
+    }
+
+    public long getSentCount() {
+        return sentCount;
+    }
+
+    public long getDroppedCount() {
+        return droppedCount;
+    }
+}
@@ -2,11 +2,7 @@ package xyz.hanamae.hanaWeapons;
 
 import org.bukkit.plugin.java.JavaPlugin;
 import org.bukkit.event.Listener;
-import org.bukkit.scheduler.BukkitRunnable;
 import org.bukkit.entity.Player;
-import java.util.Map;
-import java.util.HashMap;
-import java.util.UUID;
 
 /**
  * HanaWeapons 主类 - 负责插件初始化、管理器注册及核心状态追踪
@@ -15,18 +11,22 @@ public class HanaWeapons extends JavaPlugin implements Listener {
     private WeaponManager weaponManager;
     private PostureManager postureManager;
     private ComboManager comboManager;
+    private CombatStateRegistry combatStates;
+    private PlayerHandCache handCache;
+    private CombatTicker combatTicker;
+    private HudCompositor hud;
+    private EffectDispatcher effects;
+    private DurabilityQueue durability;
+    private DamageContext.Cache damageContexts;
+    private WeaponListener weaponListener;
+    private ConfigReloader reloader;
+    private ConfigWatcher watcher;
 
     private SkillManager skillManager;
+    private SkillRegistry skillRegistry;
     // Configuration
     private int blockingToleranceMs = 600;
 
-    // 追踪玩家最后一次格挡的时间戳（用于判定格挡容错）
-    private final Map<UUID, Long> lastBlockingTime = new HashMap<>();
-    // 追踪玩家开始格挡的瞬间时间点（用于计算招架 Parry 的时间窗）
-    private final Map<UUID, Long> blockStartTime = new HashMap<>();
-    // 追踪玩家招架的冷却时间戳
-    private final Map<UUID, Long> parryCooldowns = new HashMap<>();
-
     @Override
     public void onEnable() {
         // 0. 加载配置
@@ -34,8 +34,22 @@ public class HanaWeapons extends JavaPlugin implements Listener {
         blockingToleranceMs = getConfig().getInt("blocking-tolerance-ms", 600);
 
         // 1. 初始化管理器
+        // 技能必须在加载武器之前注册 (武器的 skill 在加载时解析为技能 ID)
+        this.skillRegistry = new SkillRegistry();
+        this.skillRegistry.register(new SquareOffSkill(this));
         this.weaponManager = new WeaponManager(this);
         this.weaponManager.loadWeapons(); // 关键：启动时从配置文件加载武器数据
+        this.combatStates = new CombatStateRegistry(); // 玩家战斗状态 (加入时创建，退出时释放)
+        this.combatStates.loadOnline();
+        this.handCache = new PlayerHandCache(this, weaponManager); // 手持武器缓存，必须先于其他管理器创建
+        this.combatTicker = new CombatTicker(this); // 战斗 Tick 管线，各管理器在构造/启用时注册阶段
+        // 格挡追踪阶段：实时更新玩家是否处于格挡或举盾状态，因为原版 API 的 getBlockStartTime 并不完全好用
+        this.combatTicker.register(CombatTicker.Stage.BLOCK_TRACKING, this::trackBlocking);
+        this.damageContexts = new DamageContext.Cache(this);
+        this.hud = new HudCompositor(this);
+        this.hud.precompute(weaponManager);
+        this.effects = new EffectDispatcher(this); // 战斗特效在每 tick 合并后发送
+        this.durability = new DurabilityQueue(this); // 格挡/招架的耐久消耗在每 tick 合并后写回
         
         this.postureManager = new PostureManager(this, weaponManager);
         this.postureManager.onEnable(); // 启动姿态管理器的逻辑（如任务调度）
@@ -44,56 +58,60 @@ public class HanaWeapons extends JavaPlugin implements Listener {
         this.skillManager = new SkillManager(this, weaponManager);
         // Explicitly load skill config (though constructor does it too)
         this.skillManager.loadConfig();
+        this.reloader = new ConfigReloader(this);
+        // HUD 合成必须在所有模块写入通道之后执行，所以最后注册
+        this.combatTicker.register(CombatTicker.Stage.HUD, hud::flush);
         
+        getServer().getPluginManager().registerEvents(handCache, this);
+        getServer().getPluginManager().registerEvents(combatTicker, this);
         getServer().getPluginManager().registerEvents(skillManager, this);
-        getServer().getPluginManager().registerEvents(new WeaponListener(this, weaponManager), this);
+        this.weaponListener = new WeaponListener(this, weaponManager);
+        this.weaponListener.getRefreshQueue().start();
+        getServer().getPluginManager().registerEvents(weaponListener, this);
         getServer().getPluginManager().registerEvents(new PostureListener(this, postureManager, weaponManager), this);
-        getServer().getPluginManager().registerEvents(new StunListener(postureManager), this);
+        getServer().getPluginManager().registerEvents(new StunListener(this, postureManager), this);
+        getServer().getPluginManager().registerEvents(postureManager.getMobStuns(), this);
+        getServer().getPluginManager().registerEvents(durability, this);
+        getServer().getPluginManager().registerEvents(damageContexts, this); // 伤害事件结束后释放上下文
+        // 最后注册：同为 MONITOR 的退出事件中，其他监听器先处理完再释放状态
+        getServer().getPluginManager().registerEvents(combatStates, this);
         
         // 3. 注册指令
         getCommand("hw").setExecutor(new HanaWeaponsCommand(this, weaponManager));
         
-        // 4. 启动格挡追踪任务 (每 1 tick 运行一次)
-        // 目的：实时更新玩家是否处于格挡或举盾状态，因为原版 API 的 getBlockStartTime 并不完全好用
-        new BukkitRunnable() {
-            @Override
-            public void run() {
-                long now = System.currentTimeMillis();
-                for (Player player : org.bukkit.Bukkit.getOnlinePlayers()) {
-                    // 检查玩家是否正在格挡、举手或正在使用物品
-                    // 优化：仅当玩家手持有效武器时才更新格挡状态，避免吃东西误判
-                    if (isHoldingValidWeapon(player) && (player.isBlocking() || player.isHandRaised())) {
-                        lastBlockingTime.put(player.getUniqueId(), now);
-                    }
-                }
-            }
-        }.runTaskTimer(this, 1L, 1L);
+        // 4. 启动战斗 Tick 管线 (每 1 tick 运行一次，只处理活跃玩家)
+        combatTicker.start();
+
+        // 5. 配置文件热重载 (config.yml 中启用时)
+        this.watcher = new ConfigWatcher(this);
+        this.watcher.start();
         
         getLogger().info("HanaWeapons 已启动");
     }
 
-    @org.bukkit.event.EventHandler
-    public void onPlayerQuit(org.bukkit.event.player.PlayerQuitEvent event) {
-        UUID uuid = event.getPlayer().getUniqueId();
-        lastBlockingTime.remove(uuid);
-        blockStartTime.remove(uuid);
-        parryCooldowns.remove(uuid);
-    }
-    
     /**
-     * 判断玩家是否持有有效武器（主手或副手）
+     * 格挡追踪阶段
+     * @return 玩家是否仍手持 Hana 武器 (手持武器的玩家保持活跃)
      */
+    private boolean trackBlocking(Player player, PlayerCombatState state, long now) {
+        handCache.resolve(state);
+        // 检查玩家是否正在格挡、举手或正在使用物品
+        // 优化：仅当玩家手持有效武器时才更新格挡状态，避免吃东西误判
+        if (isHoldingValidWeapon(state) && (player.isBlocking() || player.isHandRaised())) {
+            state.lastBlockingTime = now;
+            // 格挡 (含容错时间) 结束 1.5 秒后才开始恢复架势
+            postureManager.pauseRegen(state, now, now + blockingToleranceMs + 1500);
+        }
+        return state.main != null || state.off != null;
+    }
+
     /**
      * 检查玩家是否持有有效的“可格挡”武器
      * 防止普通物品或未启用格挡机制的武器触发格挡逻辑
      */
-    private boolean isHoldingValidWeapon(Player player) {
-        WeaponManager.WeaponData mainData = weaponManager.getWeaponData(player.getInventory().getItemInMainHand());
-        if (mainData != null && mainData.mechanicBlocking) return true;
-
-        WeaponManager.WeaponData offData = weaponManager.getWeaponData(player.getInventory().getItemInOffHand());
-        if (offData != null && offData.mechanicBlocking) return true;
-        
+    private boolean isHoldingValidWeapon(PlayerCombatState state) {
+        if (state.main != null && state.main.mechanicBlocking) return true;
+        if (state.off != null && state.off.mechanicBlocking) return true;
         return false;
     }
     
@@ -104,50 +122,57 @@ public class HanaWeapons extends JavaPlugin implements Listener {
     public boolean isBlockingOrRecentlyBlocking(Player player) {
         // 核心修复：必须持有有效且启用了 blocking 机制的武器，否则一律视为未格挡
         // 这解决了“长剑(blocking:false)右键也会触发架势条 Action Bar”的问题
-        if (!isHoldingValidWeapon(player)) return false;
+        return isBlockingOrRecentlyBlocking(combatStates.get(player));
+    }
+
+    /**
+     * 同上，已持有状态对象时使用
+     */
+    boolean isBlockingOrRecentlyBlocking(PlayerCombatState state) {
+        Player player = state.player;
+        handCache.resolve(state);
+        if (!isHoldingValidWeapon(state)) return false;
 
         // 1. 正在格挡或举手（且持有有效武器）
         if (player.isBlocking() || player.isHandRaised()) return true;
         
         // 2. 检查近期格挡记录（容错）
-        Long lastTime = lastBlockingTime.get(player.getUniqueId());
-        return lastTime != null && (System.currentTimeMillis() - lastTime) <= blockingToleranceMs;
+        return state.lastBlockingTime != 0 && (System.currentTimeMillis() - state.lastBlockingTime) <= blockingToleranceMs;
     }
 
     /**
      * 更新玩家最后格挡的时间戳
      */
     public void updateBlockingStatus(Player player) {
-        lastBlockingTime.put(player.getUniqueId(), System.currentTimeMillis());
+        combatStates.get(player).lastBlockingTime = System.currentTimeMillis();
     }
     
     /**
      * 记录玩家开始格挡的具体时刻
      */
     public void updateBlockStartTime(Player player) {
-        blockStartTime.put(player.getUniqueId(), System.currentTimeMillis());
+        combatStates.get(player).blockStartTime = System.currentTimeMillis();
     }
 
     /**
      * 获取玩家开始格挡的时间戳，用于计算招架判定
      */
     public long getBlockStartTime(Player player) {
-        return blockStartTime.getOrDefault(player.getUniqueId(), 0L);
+        return combatStates.get(player).blockStartTime;
     }
     
     /**
      * 检查玩家招架技能是否在冷却中
      */
     public boolean isOnParryCooldown(Player player) {
-        Long cooldownEnd = parryCooldowns.get(player.getUniqueId());
-        return cooldownEnd != null && System.currentTimeMillis() < cooldownEnd;
+        return System.currentTimeMillis() < combatStates.get(player).parryCooldownEnd;
     }
 
     /**
      * 设置玩家的招架冷却时间
      */
     public void setParryCooldown(Player player, int cooldownMs) {
-        parryCooldowns.put(player.getUniqueId(), System.currentTimeMillis() + cooldownMs);
+        combatStates.get(player).parryCooldownEnd = System.currentTimeMillis() + cooldownMs;
     }
 
     /**
@@ -161,9 +186,102 @@ public class HanaWeapons extends JavaPlugin implements Listener {
         return skillManager;
     }
 
+    /**
+     * 获取技能注册表
+     */
+    public SkillRegistry getSkillRegistry() {
+        return skillRegistry;
+    }
+
+    /**
+     * 获取配置重载器 (/hw reload)
+     */
+    public ConfigReloader getReloader() {
+        return reloader;
+    }
+
+    /**
+     * 获取配置文件热重载
+     */
+    public ConfigWatcher getWatcher() {
+        return watcher;
+    }
+
+    /**
+     * 获取耐久写回队列 (格挡/招架的耐久消耗每 tick 合并后写回物品)
+     */
+    public DurabilityQueue getDurability() {
+        return durability;
+    }
+
+    public EffectDispatcher getEffects() {
+        return effects;
+    }
+
+    public ReachResolver getReachResolver() {
+        return weaponListener.getReachResolver();
+    }
+
+    public ItemRefreshQueue getRefreshQueue() {
+        return weaponListener.getRefreshQueue();
+    }
+
+    /**
+     * 获取本次伤害事件的共享上下文 (同一事件的所有监听器拿到同一个对象)
+     */
+    public DamageContext getDamageContext(org.bukkit.event.entity.EntityDamageByEntityEvent event) {
+        return damageContexts.get(event);
+    }
+
+    public WeaponManager getWeaponManager() {
+        return weaponManager;
+    }
+
+    /**
+     * 获取架势管理器
+     */
+    public PostureManager getPostureManager() {
+        return postureManager;
+    }
+
+    /**
+     * 获取 Action Bar 合成器
+     */
+    public HudCompositor getHud() {
+        return hud;
+    }
+
+    /**
+     * 获取战斗 Tick 管线
+     */
+    public CombatTicker getCombatTicker() {
+        return combatTicker;
+    }
+
+    /**
+     * 获取玩家战斗状态注册表
+     */
+    public CombatStateRegistry getCombatStates() {
+        return combatStates;
+    }
+
+    /**
+     * 获取玩家手持武器缓存
+     */
+    public PlayerHandCache getHandCache() {
+        return handCache;
+    }
+
     @Override
     public void onDisable() {
         // 插件关闭时清理姿态管理器的资源（如 BossBar）
+        if (watcher != null) watcher.stop();
+        if (reloader != null) reloader.shutdown();
         if (postureManager != null) postureManager.onDisable();
+        if (weaponListener != null) weaponListener.getRefreshQueue().stop();
+        if (durability != null) durability.flush();
+        if (combatTicker != null) combatTicker.stop();
+        if (comboManager != null) comboManager.getResetWheel().stop();
+        if (combatStates != null) combatStates.clear();
     }
 }
\ No newline at end of file
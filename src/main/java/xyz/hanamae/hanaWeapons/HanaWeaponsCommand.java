@@ -37,6 +37,8 @@ public class HanaWeaponsCommand implements CommandExecutor, TabCompleter {
                 return handleGive(sender, args);
             case "reload":
                 return handleReload(sender);
+            case "stats":
+                return handleStats(sender);
             default:
                 sendUsage(sender);
                 return true;
@@ -98,20 +100,54 @@ public class HanaWeaponsCommand implements CommandExecutor, TabCompleter {
             sender.sendMessage("§cNo permission.");
             return true;
         }
-        manager.loadWeapons();
-        plugin.getSkillManager().loadConfig(); // Reload skills config
-        sender.sendMessage("§aConfiguration reloaded.");
+        // 在后台解析，完成后在主线程替换并报告耗时
+        if (plugin.getReloader().reload(sender)) {
+            sender.sendMessage("§7Reloading configuration...");
+        } else {
+            sender.sendMessage("§eA reload is already in progress.");
+        }
+        return true;
+    }
+
+    /**
+     * 显示运行时统计 (用于排查性能问题)
+     */
+    private boolean handleStats(CommandSender sender) {
+        if (!sender.hasPermission("hanaweapons.admin")) {
+            sender.sendMessage("§cNo permission.");
+            return true;
+        }
+        ItemRefreshQueue queue = plugin.getRefreshQueue();
+        sender.sendMessage("§e[HanaWeapons] Item refresh: §f" + queue.getAppliedCount() + "§7 applied / §f"
+                + queue.getRequestedCount() + "§7 requested (§f" + queue.getPendingCount() + "§7 pending)");
+        sender.sendMessage("§e[HanaWeapons] Combat tick: §f" + plugin.getCombatTicker().getActiveCount() + "§7 active players");
+        ReachResolver reach = plugin.getReachResolver();
+        sender.sendMessage("§e[HanaWeapons] Extended reach: §f" + reach.getHitCount() + "§7 hit / §f" + reach.getMissCount()
+                + "§7 miss / §f" + reach.getSkipCount() + "§7 skipped (nothing along the ray), §f" + reach.getReuseCount() + "§7 reused");
+        DurabilityQueue durability = plugin.getDurability();
+        sender.sendMessage("§e[HanaWeapons] Durability: §f" + durability.getWriteCount() + "§7 item writes / §f"
+                + durability.getRequestedCount() + "§7 hits (§f" + durability.getPendingCount() + "§7 pending)");
+        EffectDispatcher effects = plugin.getEffects();
+        sender.sendMessage("§e[HanaWeapons] Effects: §f" + effects.getRequestedCount() + "§7 requested, §f" + effects.getMergedCount()
+                + "§7 merged, §f" + effects.getSentCount() + "§7 sent, §f" + effects.getDroppedCount() + "§7 dropped (viewer cap)");
+        sender.sendMessage("§e[HanaWeapons] Stunned mobs: §f" + plugin.getPostureManager().getMobStuns().size());
+        ComboResetWheel wheel = plugin.getComboManager().getResetWheel();
+        sender.sendMessage("§e[HanaWeapons] Combo wheel: §f" + wheel.size() + "§7 pending, §f" + wheel.getInsertCount()
+                + "§7 inserted, §f" + wheel.getUpdateCount() + "§7 updated, §f" + wheel.getExpireCount() + "§7 expired");
+        HudCompositor hud = plugin.getHud();
+        sender.sendMessage("§e[HanaWeapons] Action bar: §f" + hud.getSentCount() + "§7 sent / §f"
+                + hud.getSuppressedCount() + "§7 unchanged (skipped)");
         return true;
     }
 
     private void sendUsage(CommandSender sender) {
-        sender.sendMessage("§eUsage: /hw give <player> <model_data> | /hw reload");
+        sender.sendMessage("§eUsage: /hw give <player> <model_data> | /hw reload | /hw stats");
     }
 
     @Override
     public List<String> onTabComplete(CommandSender sender, Command command, String alias, String[] args) {
         if (args.length == 1) {
-            return List.of("give", "reload");
+            return List.of("give", "reload", "stats");
         }
         if (args.length == 2 && args[0].equalsIgnoreCase("give")) {
             return null; // Player list
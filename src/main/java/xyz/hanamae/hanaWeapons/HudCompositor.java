@@ -0,0 +1,239 @@
+package xyz.hanamae.hanaWeapons;
+
+import net.md_5.bungee.api.ChatMessageType;
+import net.md_5.bungee.api.chat.BaseComponent;
+import net.md_5.bungee.api.chat.TextComponent;
+import org.bukkit.Bukkit;
+import org.bukkit.entity.Player;
+
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Action Bar 合成器
+ * 唯一负责发送 Action Bar 的地方。各模块只向自己的通道写入内容，HUD 阶段末尾按优先级选出最高的一条，
+ * 只有内容变化时才发包，内容不变时每 KEEPALIVE_TICKS 重发一次防止客户端淡出。
+ * 架势条、蓄力条和倒计时文字都预先生成组件，同样的内容始终是同一个对象，可以直接按引用比较。
+ */
+public class HudCompositor {
+
+    /**
+     * 通道 (按优先级从高到低声明)
+     * timed 通道由事件写入并持续一段时间；其余通道需要每 tick 重新写入
+     */
+    public enum Channel {
+        STUN(false),
+        GUARD_BREAK(false),
+        STANCE_CHARGE(false),
+        COMBO(true),
+        NOTICE(true),
+        POSTURE(false);
+
+        final boolean timed;
+
+        Channel(boolean timed) {
+            this.timed = timed;
+        }
+    }
+
+    private static final Channel[] CHANNELS = Channel.values();
+
+    // 原版 Action Bar 约 3 秒后淡出，内容不变时 1 秒重发一次即可
+    private static final int KEEPALIVE_TICKS = 20;
+    // 倒计时文字缓存上限 (以 0.1 秒为单位)
+    private static final int MAX_TIMER_TENTHS = 600;
+
+    static final int STANCE_BAR_LENGTH = 20;
+
+    /**
+     * 每位玩家的 HUD 帧 (存放在 PlayerCombatState 中)
+     */
+    static final class Frame {
+        final BaseComponent[] channels = new BaseComponent[CHANNELS.length];
+        final int[] expireTick = new int[CHANNELS.length];
+        BaseComponent lastSent;
+        int lastSentTick;
+    }
+
+    private final HanaWeapons plugin;
+
+    // [长度][填充格数]
+    private BaseComponent[][] postureBars = new BaseComponent[0][];
+    private final BaseComponent[] stanceBars = new BaseComponent[STANCE_BAR_LENGTH + 1];
+    private final BaseComponent stanceReady = new TextComponent("§b§l[ ! 准备就绪 ! ]");
+    private final BaseComponent[] stunTexts = new BaseComponent[MAX_TIMER_TENTHS + 1];
+    private final BaseComponent[] guardBreakTexts = new BaseComponent[MAX_TIMER_TENTHS + 1];
+    private final Map<String, BaseComponent> texts = new HashMap<>();
+
+    // 统计：实际发包 / 因内容未变而省略
+    private long sentCount;
+    private long suppressedCount;
+
+    public HudCompositor(HanaWeapons plugin) {
+        this.plugin = plugin;
+        for (int fill = 0; fill <= STANCE_BAR_LENGTH; fill++) {
+            stanceBars[fill] = new TextComponent(buildBar("§e准备架势: §8[", STANCE_BAR_LENGTH, fill, "§a|"));
+        }
+    }
+
+    /**
+     * 根据当前武器配置预生成架势条 (加载和重载后调用)
+     */
+    public void precompute(WeaponManager weaponManager) {
+        int max = weaponManager.getPostureBarLength();
+        for (WeaponManager.WeaponData data : weaponManager.getRegistry().getBaseWeapons()) {
+            max = Math.max(max, data.postureBarLength);
+        }
+        BaseComponent[][] bars = new BaseComponent[max + 1][];
+        bars[weaponManager.getPostureBarLength()] = buildPostureRow(weaponManager.getPostureBarLength());
+        for (WeaponManager.WeaponData data : weaponManager.getRegistry().getBaseWeapons()) {
+            if (data.postureBarLength > 0 && bars[data.postureBarLength] == null) {
+                bars[data.postureBarLength] = buildPostureRow(data.postureBarLength);
+            }
+        }
+        postureBars = bars;
+        texts.clear();
+    }
+
+    // ================== 通道写入 ==================
+
+    /**
+     * 写入本 tick 的通道内容 (非 timed 通道)
+     */
+    public void set(PlayerCombatState state, Channel channel, BaseComponent content) {
+        state.hud.channels[channel.ordinal()] = content;
+    }
+
+    /**
+     * 在 timed 通道显示一段文字，持续 durationTicks
+     */
+    public void flash(Player player, Channel channel, String text, int durationTicks) {
+        PlayerCombatState state = plugin.getCombatStates().get(player);
+        state.hud.channels[channel.ordinal()] = text(text);
+        state.hud.expireTick[channel.ordinal()] = Bukkit.getCurrentTick() + durationTicks;
+        plugin.getCombatTicker().activate(state);
+    }
+
+    // ================== 预生成组件 ==================
+
+    public BaseComponent postureBar(int length, int fill) {
+        BaseComponent[][] bars = postureBars;
+        BaseComponent[] row = length < bars.length ? bars[length] : null;
+        if (row == null) {
+            // 配置外的长度 (不应出现)，退化为即时生成
+            return new TextComponent(buildBar("§e架势: §8[", length, fill, "§6|"));
+        }
+        return row[Math.max(0, Math.min(length, fill))];
+    }
+
+    public BaseComponent stanceBar(int fill) {
+        return stanceBars[Math.max(0, Math.min(STANCE_BAR_LENGTH, fill))];
+    }
+
+    public BaseComponent stanceReady() {
+        return stanceReady;
+    }
+
+    public BaseComponent stunText(long millisLeft) {
+        return timerText(stunTexts, "§e§l[ ! 僵直 ! ] §7", millisLeft);
+    }
+
+    public BaseComponent guardBreakText(long millisLeft) {
+        return timerText(guardBreakTexts, "§c§l[ 破防状态 ] §7", millisLeft);
+    }
+
+    /**
+     * 固定文字 (例如连招提示)，相同文字共用一个组件
+     */
+    public BaseComponent text(String text) {
+        BaseComponent component = texts.get(text);
+        if (component == null) {
+            component = new TextComponent(text);
+            texts.put(text, component);
+        }
+        return component;
+    }
+
+    private BaseComponent timerText(BaseComponent[] cache, String prefix, long millisLeft) {
+        int tenths = (int) (Math.max(0, millisLeft) / 100);
+        if (tenths > MAX_TIMER_TENTHS) {
+            return new TextComponent(prefix + String.format(Locale.ROOT, "%.1f", tenths / 10.0) + "s");
+        }
+        BaseComponent component = cache[tenths];
+        if (component == null) {
+            component = new TextComponent(prefix + String.format(Locale.ROOT, "%.1f", tenths / 10.0) + "s");
+            cache[tenths] = component;
+        }
+        return component;
+    }
+
+    private static BaseComponent[] buildPostureRow(int length) {
+        BaseComponent[] row = new BaseComponent[length + 1];
+        for (int fill = 0; fill <= length; fill++) {
+            row[fill] = new TextComponent(buildBar("§e架势: §8[", length, fill, "§6|"));
+        }
+        return row;
+    }
+
+    private static String buildBar(String prefix, int length, int fill, String filled) {
+        StringBuilder sb = new StringBuilder(prefix);
+        for (int i = 0; i < length; i++) {
+            if (i < fill) sb.append(filled);
+            else sb.append("§7.");
+        }
+        sb.append("§8]");
+        return sb.toString();
+    }
+
+    // ================== 合成与发送 ==================
+
+    /**
+     * HUD 阶段末尾调用：选出优先级最高的内容，只在变化或保活到期时发送
+     * @return 是否还有未到期的 timed 通道 (需要保持活跃)
+     */
+    boolean flush(Player player, PlayerCombatState state, long now) {
+        Frame frame = state.hud;
+        int tick = Bukkit.getCurrentTick();
+        BaseComponent top = null;
+        boolean pending = false;
+
+        for (Channel channel : CHANNELS) {
+            int i = channel.ordinal();
+            BaseComponent content = frame.channels[i];
+            if (content == null) continue;
+            if (channel.timed) {
+                if (tick >= frame.expireTick[i]) {
+                    frame.channels[i] = null;
+                    continue;
+                }
+                pending = true;
+            } else {
+                frame.channels[i] = null; // 下一 tick 由各模块重新写入
+            }
+            if (top == null) top = content;
+        }
+
+        if (top == null) {
+            frame.lastSent = null;
+            return pending;
+        }
+        if (top != frame.lastSent || tick - frame.lastSentTick >= KEEPALIVE_TICKS) {
+            player.spigot().sendMessage(ChatMessageType.ACTION_BAR, top);
+            frame.lastSent = top;
+            frame.lastSentTick = tick;
+            sentCount++;
+        } else {
+            suppressedCount++;
+        }
+        return pending;
+    }
+
+    public long getSentCount() {
+        return sentCount;
+    }
+
+    public long getSuppressedCount() {
+        return suppressedCount;
+    }
+}
@@ -0,0 +1,85 @@
+package xyz.hanamae.hanaWeapons;
+
+import org.bukkit.Bukkit;
+import org.bukkit.entity.Player;
+import org.bukkit.scheduler.BukkitTask;
+
+import java.util.LinkedHashSet;
+import java.util.Set;
+import java.util.UUID;
+import java.util.function.Consumer;
+
+/**
+ * 手持物品刷新队列
+ * 事件处理只把玩家加入脏集合，由一个共享任务每 tick 统一处理，同一玩家每 tick 最多刷新一次。
+ * (例如 Shift 点击整箱物品时，一个 tick 内的几十次请求只会刷新一次)
+ */
+public class ItemRefreshQueue {
+
+    private final HanaWeapons plugin;
+    private final Consumer<Player> refresher;
+
+    private Set<UUID> pending = new LinkedHashSet<>();
+    private Set<UUID> draining = new LinkedHashSet<>();
+    private BukkitTask task;
+
+    // 统计：请求次数 / 实际执行次数
+    private long requestedCount;
+    private long appliedCount;
+
+    public ItemRefreshQueue(HanaWeapons plugin, Consumer<Player> refresher) {
+        this.plugin = plugin;
+        this.refresher = refresher;
+    }
+
+    public void start() {
+        if (task == null) {
+            task = Bukkit.getScheduler().runTaskTimer(plugin, this::drain, 1L, 1L);
+        }
+    }
+
+    public void stop() {
+        if (task != null) {
+            task.cancel();
+            task = null;
+        }
+        pending.clear();
+    }
+
+    /**
+     * 请求在下一 tick 刷新玩家的手持物品
+     */
+    public void request(Player player) {
+        requestedCount++;
+        pending.add(player.getUniqueId());
+    }
+
+    private void drain() {
+        if (pending.isEmpty()) return;
+
+        // 交换集合：刷新过程中产生的新请求留到下一 tick
+        Set<UUID> batch = pending;
+        pending = draining;
+        draining = batch;
+
+        for (UUID uuid : batch) {
+            Player player = Bukkit.getPlayer(uuid);
+            if (player == null || !player.isOnline()) continue;
+            refresher.accept(player);
+            appliedCount++;
+        }
+        batch.clear();
+    }
+
+    public long getRequestedCount() {
+        return requestedCount;
+    }
+
+    public long getAppliedCount() {
+        return appliedCount;
+    }
+
+    public int getPendingCount() {
+        return pending.size();
+    }
+}
@@ -0,0 +1,203 @@
+package xyz.hanamae.hanaWeapons;
+
+import com.destroystokyo.paper.event.entity.EntityRemoveFromWorldEvent;
+import org.bukkit.entity.Entity;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
+import org.bukkit.event.Listener;
+import org.bukkit.event.world.EntitiesUnloadEvent;
+
+/**
+ * 非玩家生物的僵直记录
+ * 以实体 ID (int) 为键、僵直结束时间 (long) 为值的开放寻址表，查询只需几次数组访问，不产生任何对象。
+ * 另用一个按结束时间排序的最小堆，由战斗 Tick 管线每 tick 清除到期的条目；
+ * 实体被移除或所在区块卸载时立即删除。玩家的僵直仍存放在 PlayerCombatState.stunEnd 中。
+ */
+public class MobStunRegistry implements Listener {
+
+    private static final int INITIAL_CAPACITY = 64; // 必须是 2 的幂
+
+    // 开放寻址表 (线性探测)，values[i] == 0 表示空槽
+    private int[] keys = new int[INITIAL_CAPACITY];
+    private long[] values = new long[INITIAL_CAPACITY];
+    private int mask = INITIAL_CAPACITY - 1;
+    private int size;
+
+    // 到期最小堆 (重复僵直会留下旧条目，弹出时与表中的值比对后丢弃)
+    private int[] heapIds = new int[INITIAL_CAPACITY];
+    private long[] heapEnds = new long[INITIAL_CAPACITY];
+    private int heapSize;
+
+    /**
+     * 记录僵直 (已有更晚的结束时间时保留较晚的)
+     */
+    public void stun(int entityId, long endTime) {
+        int slot = find(entityId);
+        if (slot >= 0) {
+            if (values[slot] >= endTime) return;
+            values[slot] = endTime;
+        } else {
+            insert(entityId, endTime);
+        }
+        push(entityId, endTime);
+    }
+
+    /**
+     * 实体是否处于僵直 (到期的条目顺便删除)
+     */
+    public boolean isStunned(int entityId, long now) {
+        if (size == 0) return false;
+        int slot = find(entityId);
+        if (slot < 0) return false;
+        if (now > values[slot]) {
+            removeSlot(slot);
+            return false;
+        }
+        return true;
+    }
+
+    public void remove(int entityId) {
+        if (size == 0) return;
+        int slot = find(entityId);
+        if (slot >= 0) removeSlot(slot);
+    }
+
+    /**
+     * 清除所有到期的条目 (每 tick 调用一次)
+     */
+    public void drain(long now) {
+        while (heapSize > 0 && heapEnds[0] < now) {
+            int id = heapIds[0];
+            long end = heapEnds[0];
+            pop();
+            int slot = find(id);
+            // 表中的值已被延长或条目已删除时，这是一条过期的堆记录
+            if (slot >= 0 && values[slot] == end) removeSlot(slot);
+        }
+    }
+
+    public void clear() {
+        keys = new int[INITIAL_CAPACITY];
+        values = new long[INITIAL_CAPACITY];
+        mask = INITIAL_CAPACITY - 1;
+        size = 0;
+        heapSize = 0;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    // ================== 清理 ==================
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onEntityRemove(EntityRemoveFromWorldEvent event) {
+        remove(event.getEntity().getEntityId());
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onEntitiesUnload(EntitiesUnloadEvent event) {
+        if (size == 0) return;
+        for (Entity entity : event.getEntities()) {
+            remove(entity.getEntityId());
+        }
+    }
+
+    // ================== 开放寻址表 ==================
+
+    private static int hash(int id) {
+        int h = id * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+
+    private int find(int id) {
+        int i = hash(id) & mask;
+        while (values[i] != 0) {
+            if (keys[i] == id) return i;
+            i = (i + 1) & mask;
+        }
+        return -1;
+    }
+
+    private void insert(int id, long value) {
+        if ((size + 1) * 2 > keys.length) resize(keys.length * 2);
+        int i = hash(id) & mask;
+        while (values[i] != 0) {
+            i = (i + 1) & mask;
+        }
+        keys[i] = id;
+        values[i] = value;
+        size++;
+    }
+
+    /**
+     * 删除槽位并向前移动后续探测链上的条目 (不使用墓碑标记)
+     */
+    private void removeSlot(int slot) {
+        int gap = slot;
+        int i = slot;
+        while (true) {
+            i = (i + 1) & mask;
+            if (values[i] == 0) break;
+            int home = hash(keys[i]) & mask;
+            // 条目的理想位置不在 (gap, i] 区间内时才能移到空位
+            if (((i - home) & mask) >= ((i - gap) & mask)) {
+                keys[gap] = keys[i];
+                values[gap] = values[i];
+                gap = i;
+            }
+        }
+        values[gap] = 0;
+        size--;
+    }
+
+    private void resize(int capacity) {
+        int[] oldKeys = keys;
+        long[] oldValues = values;
+        keys = new int[capacity];
+        values = new long[capacity];
+        mask = capacity - 1;
+        size = 0;
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldValues[i] != 0) insert(oldKeys[i], oldValues[i]);
+        }
+    }
+
+    // ================== 最小堆 ==================
+
+    private void push(int id, long end) {
+        if (heapSize == heapIds.length) {
+            heapIds = java.util.Arrays.copyOf(heapIds, heapSize * 2);
+            heapEnds = java.util.Arrays.copyOf(heapEnds, heapSize * 2);
+        }
+        int i = heapSize++;
+        while (i > 0) {
+            int parent = (i - 1) >>> 1;
+            if (heapEnds[parent] <= end) break;
+            heapIds[i] = heapIds[parent];
+            heapEnds[i] = heapEnds[parent];
+            i = parent;
+        }
+        heapIds[i] = id;
+        heapEnds[i] = end;
+    }
+
+    private void pop() {
+        int last = --heapSize;
+        if (last == 0) return;
+        int id = heapIds[last];
+        long end = heapEnds[last];
+        int i = 0;
+        while (true) {
+            int child = i * 2 + 1;
+            if (child >= last) break;
+            if (child + 1 < last && heapEnds[child + 1] < heapEnds[child]) child++;
+            if (heapEnds[child] >= end) break;
+            heapIds[i] = heapIds[child];
+            heapEnds[i] = heapEnds[child];
+            i = child;
+        }
+        heapIds[i] = id;
+        heapEnds[i] = end;
+    }
+}
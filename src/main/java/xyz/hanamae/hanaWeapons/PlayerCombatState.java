@@ -0,0 +1,101 @@
+package xyz.hanamae.hanaWeapons;
+
+import org.bukkit.Bukkit;
+import org.bukkit.entity.Player;
+import xyz.hanamae.hanaWeapons.WeaponManager.WeaponData;
+
+/**
+ * 单个玩家的战斗状态
+ * 玩家加入时创建、退出时释放 (见 CombatStateRegistry)，各管理器直接读写字段，
+ * 一次查询即可拿到手持武器、格挡、架势条、连招和技能的全部状态。
+ * 时间戳均为 System.currentTimeMillis()，0 表示"没有记录"。
+ */
+public final class PlayerCombatState {
+
+    final Player player;
+
+    // ================== 手持武器 (PlayerHandCache) ==================
+    WeaponData main;
+    WeaponData off;
+    // 握持状态：true 表示双手握持 (副手是占位符)
+    boolean twoHanded;
+    // 事件触发时背包通常还没真正变化，所以在事件所在 tick 及下一 tick 内每次读取都重新解析
+    int handsStaleUntilTick = Bukkit.getCurrentTick() + 1;
+
+    // ================== 格挡 / 招架 (HanaWeapons) ==================
+    long lastBlockingTime;   // 最后一次处于格挡状态的时间 (格挡容错)
+    long blockStartTime;     // 开始格挡的瞬间 (招架时间窗)
+    long parryCooldownEnd;   // 招架冷却结束时间
+
+    // ================== 架势条 (PostureManager) ==================
+    // 架势值以 (上次变化时的值, 时间, 速度) 保存，读取时按闭式公式计算，见 PostureManager.getStamina
+    double staminaBase = 100.0; // 上次变化时的架势值 0.0 - 100.0
+    long staminaBaseTime;       // 上次变化的时间
+    double staminaRate;         // 恢复速度 (每毫秒)，0 表示不恢复
+    long regenResumeTime;       // 恢复开始时间 (受击/格挡后的暂停、僵直结束)
+    long fullTime;              // 架势条恢复满的时间 (满条动画)
+    long guardBreakEnd;         // 破防结束时间
+    long stunEnd;               // 僵直结束时间
+
+    // ================== 连招 (ComboManager) ==================
+    int comboStage;          // 下一次攻击的阶段 (0-based)
+    long lastAttackTime;
+    long lastComboUpdate;    // 最后一次推进连招阶段的时间 (防止横扫重复触发)
+    int comboResetTick;      // 连招重置的截止 tick，0 表示没有 (由 ComboResetWheel 处理)
+    WeaponData comboWeapon;  // 连招所属的武器
+    boolean comboQueued;     // 是否已在时间轮中
+
+    // ================== 技能 (SkillManager) ==================
+    Skill.Phase skillPhase = Skill.Phase.IDLE; // 蓄力中 / 就绪
+    int skillId = SkillRegistry.NONE;          // 正在蓄力的技能
+    long sneakStartTime;     // 开始蓄力的时间
+    long skillCooldownEnd;
+    double skillBonusAP;     // 技能释放期间的额外护甲穿透
+
+    // ================== 耐久 (DurabilityQueue) ==================
+    // 本 tick 内累计、尚未写入物品的耐久消耗，以及累计时手持物品的类型
+    int durabilityMain;
+    int durabilityOff;
+    org.bukkit.Material durabilityMainType;
+    org.bukkit.Material durabilityOffType;
+    boolean durabilityQueued; // 是否已在写回队列中
+
+    // ================== 延伸攻击距离 (ReachResolver) ==================
+    // 判定结果只在同一 tick 内有效
+    int reachResultTick = -1;
+    org.bukkit.entity.LivingEntity reachResult;
+
+    // ================== HUD (HudCompositor) ==================
+    final HudCompositor.Frame hud = new HudCompositor.Frame();
+
+    PlayerCombatState(Player player) {
+        this.player = player;
+    }
+
+    public Player getPlayer() {
+        return player;
+    }
+
+    boolean isGuardBroken() {
+        return guardBreakEnd != 0;
+    }
+
+    /**
+     * 清除连招状态 (时间轮中的条目会在到达槽位时自动丢弃)
+     */
+    void clearCombo() {
+        comboResetTick = 0;
+        comboWeapon = null;
+        comboStage = 0;
+        lastAttackTime = 0;
+        lastComboUpdate = 0;
+    }
+
+    /**
+     * 玩家退出时释放状态
+     */
+    void release() {
+        clearCombo();
+        reachResult = null;
+    }
+}
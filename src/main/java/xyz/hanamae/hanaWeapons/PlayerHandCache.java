@@ -0,0 +1,137 @@
+package xyz.hanamae.hanaWeapons;
+
+import io.papermc.paper.event.entity.EntityEquipmentChangedEvent;
+import org.bukkit.Bukkit;
+import org.bukkit.entity.Player;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
+import org.bukkit.event.Listener;
+import org.bukkit.event.entity.EntityPickupItemEvent;
+import org.bukkit.event.inventory.InventoryClickEvent;
+import org.bukkit.event.inventory.InventoryDragEvent;
+import org.bukkit.event.player.PlayerDropItemEvent;
+import org.bukkit.event.player.PlayerItemHeldEvent;
+import org.bukkit.event.player.PlayerSwapHandItemsEvent;
+import xyz.hanamae.hanaWeapons.WeaponManager.WeaponData;
+
+/**
+ * 玩家手持武器缓存
+ * 缓存每位玩家主手/副手解析出的 WeaponData (存放在 PlayerCombatState 中)，只在切换快捷栏、F 键交换、背包操作或装备变化时刷新。
+ * 每 tick 的循环和伤害处理直接读缓存，不再读取 PDC。
+ */
+public class PlayerHandCache implements Listener {
+
+    private final HanaWeapons plugin;
+    private final WeaponManager weaponManager;
+
+    public PlayerHandCache(HanaWeapons plugin, WeaponManager weaponManager) {
+        this.plugin = plugin;
+        this.weaponManager = weaponManager;
+    }
+
+    /**
+     * 获取主手武器数据 (缓存)
+     */
+    public WeaponData getMain(Player player) {
+        return resolve(player).main;
+    }
+
+    /**
+     * 获取副手武器数据 (缓存)
+     */
+    public WeaponData getOff(Player player) {
+        return resolve(player).off;
+    }
+
+    /**
+     * 玩家当前是否处于双手握持模式
+     */
+    public boolean isTwoHanded(Player player) {
+        return resolve(player).twoHanded;
+    }
+
+    /**
+     * 切换握持状态 (由 F 键切换或移除占位符时显式设置)
+     */
+    public void setTwoHanded(Player player, boolean twoHanded) {
+        resolve(player).twoHanded = twoHanded;
+    }
+
+    /**
+     * 标记玩家的手持物品已变化，下次读取时重新解析
+     */
+    public void invalidate(Player player) {
+        plugin.getCombatStates().get(player).handsStaleUntilTick = Bukkit.getCurrentTick() + 1;
+        // 手持物品变化后重新加入战斗 Tick，由各阶段判断是否仍需处理
+        plugin.getCombatTicker().activate(player);
+    }
+
+    /**
+     * 重载武器配置后调用，旧的 WeaponData 引用全部作废
+     */
+    public void invalidateAll() {
+        int until = Bukkit.getCurrentTick() + 1;
+        for (PlayerCombatState state : plugin.getCombatStates().all()) {
+            state.handsStaleUntilTick = until;
+        }
+        plugin.getCombatTicker().activateAll();
+    }
+
+    private PlayerCombatState resolve(Player player) {
+        return resolve(plugin.getCombatStates().get(player));
+    }
+
+    /**
+     * 刷新 (如有必要) 并返回状态，已持有状态对象时可直接调用，省去一次查询
+     */
+    PlayerCombatState resolve(PlayerCombatState state) {
+        if (state.handsStaleUntilTick >= Bukkit.getCurrentTick()) {
+            org.bukkit.inventory.ItemStack offItem = state.player.getInventory().getItemInOffHand();
+            WeaponData oldMain = state.main;
+            WeaponData oldOff = state.off;
+            state.main = weaponManager.getWeaponData(state.player.getInventory().getItemInMainHand());
+            state.off = weaponManager.getWeaponData(offItem);
+            // 刷新时以副手占位符的 PDC 标记为准 (重新登录后也能恢复双手状态)
+            state.twoHanded = weaponManager.isPlaceholder(offItem);
+            // 架势恢复速度取决于手持武器
+            if ((state.main != oldMain || state.off != oldOff) && plugin.getPostureManager() != null) {
+                plugin.getPostureManager().onHandsChanged(state);
+            }
+        }
+        return state;
+    }
+
+    // ================== 刷新事件 ==================
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onHeldItemChange(PlayerItemHeldEvent event) { invalidate(event.getPlayer()); }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onSwapHand(PlayerSwapHandItemsEvent event) { invalidate(event.getPlayer()); }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onDropItem(PlayerDropItemEvent event) { invalidate(event.getPlayer()); }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onPickup(EntityPickupItemEvent event) {
+        if (event.getEntity() instanceof Player player) invalidate(player);
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onInventoryClick(InventoryClickEvent event) {
+        if (event.getWhoClicked() instanceof Player player) invalidate(player);
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onInventoryDrag(InventoryDragEvent event) {
+        if (event.getWhoClicked() instanceof Player player) invalidate(player);
+    }
+
+    /**
+     * 兜底：指令给予、物品损坏、其他插件修改装备等情况
+     */
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onEquipmentChanged(EntityEquipmentChangedEvent event) {
+        if (event.getEntity() instanceof Player player) invalidate(player);
+    }
+}
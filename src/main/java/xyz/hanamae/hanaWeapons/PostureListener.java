@@ -3,12 +3,10 @@ package xyz.hanamae.hanaWeapons;
 import org.bukkit.Sound;
 import org.bukkit.entity.LivingEntity;
 import org.bukkit.entity.Player;
-import org.bukkit.entity.Projectile;
 import org.bukkit.event.EventHandler;
 import org.bukkit.event.EventPriority;
 import org.bukkit.event.Listener;
 import org.bukkit.event.entity.EntityDamageByEntityEvent;
-import org.bukkit.util.Vector;
 
 public class PostureListener implements Listener {
 
@@ -24,22 +22,24 @@ public class PostureListener implements Listener {
 
     @EventHandler(priority = EventPriority.HIGH, ignoreCancelled = true)
     public void onDamage(EntityDamageByEntityEvent event) {
+        DamageContext ctx = plugin.getDamageContext(event);
         // 如果受害者不是玩家，则跳过
-        if (!(event.getEntity() instanceof Player victim)) return;
+        Player victim = ctx.getVictimPlayer();
+        if (victim == null) return;
 
-        // 计算攻击者的护甲穿透系数 (APC)
-        double apc = calculateAttackerAPC(event);
+        // 攻击者的护甲穿透系数 (APC，含技能加成)
+        double apc = ctx.getAttackerAPC();
         
         // 尝试触发招架 (即便玩家因为冷却或延迟在技术上未处于格挡状态)
-        if (tryParry(event, victim)) {
+        if (tryParry(event, ctx, victim)) {
             return; // 招架成功，直接返回
         }
 
         // 增强版格挡检查：检查是否正在格挡、是否举手，或是否存在近期交互记录以涵盖冷却间隙和视觉延迟
-        boolean isBlocking = isValidBlock(victim, event.getDamager());
+        boolean isBlocking = isValidBlock(ctx);
 
         if (isBlocking) {
-            handleBlocking(event, victim, apc);
+            handleBlocking(event, ctx, victim, apc);
         } else {
             handleArmorPenetration(event, victim, apc);
         }
@@ -48,36 +48,26 @@ public class PostureListener implements Listener {
     /**
      * 尝试判定招架逻辑
      */
-    private boolean tryParry(EntityDamageByEntityEvent event, Player victim) {
-        WeaponManager.WeaponData dataMain = weaponManager.getWeaponData(victim.getInventory().getItemInMainHand());
-        WeaponManager.WeaponData dataOff = weaponManager.getWeaponData(victim.getInventory().getItemInOffHand());
+    private boolean tryParry(EntityDamageByEntityEvent event, DamageContext ctx, Player victim) {
+        WeaponManager.WeaponData dataMain = ctx.getVictimMain();
         
         // 确定当前哪只手持有的武器具备招架机制
-        WeaponManager.WeaponData activeParryWeapon = null;
-        if (dataMain != null && dataMain.mechanicParry) activeParryWeapon = dataMain;
-        else if (dataOff != null && dataOff.mechanicParry) activeParryWeapon = dataOff;
+        WeaponManager.WeaponData activeParryWeapon = ctx.getParryWeapon();
         
         if (activeParryWeapon != null) {
             // 朝向检查：确保玩家正对着攻击者
-            if (event.getDamager() != null) {
-                Vector victimLook = victim.getEyeLocation().getDirection().setY(0).normalize();
-                Vector toAttacker = event.getDamager().getLocation().toVector().subtract(victim.getLocation().toVector()).setY(0).normalize();
-                // 使用点积判断，如果角度大于 90 度（点积 <= 0），判定为未面对攻击者
-                if (victimLook.dot(toAttacker) <= 0.0) return false;
-            }
+            // 使用点积判断，如果角度大于 90 度（点积 <= 0），判定为未面对攻击者
+            if (ctx.getFacingDot() <= 0.0) return false;
 
-            // 计算从开始格挡到受到伤害的时间差
-            long start = plugin.getBlockStartTime(victim);
-            long diff = System.currentTimeMillis() - start;
-            
-            // 如果时间差在武器配置的招架判定帧内 (parryWindow)
-            if (diff <= activeParryWeapon.parryWindow && diff >= 0) { 
+            // 如果从开始格挡到受到伤害的时间差在武器配置的招架判定帧内 (parryWindow)
+            if (ctx.isInParryWindow()) { 
                 // 招架成功！
                 event.setDamage(0); // 免疫本次伤害
                 
                 // 消耗对应武器的耐久度
-                if (activeParryWeapon == dataMain) damageWeapon(victim, victim.getInventory().getItemInMainHand(), 1);
-                else damageWeapon(victim, victim.getInventory().getItemInOffHand(), 1);
+                DurabilityQueue durability = plugin.getDurability();
+                if (activeParryWeapon == dataMain) durability.damage(ctx.getVictimState(), org.bukkit.inventory.EquipmentSlot.HAND, 1);
+                else durability.damage(ctx.getVictimState(), org.bukkit.inventory.EquipmentSlot.OFF_HAND, 1);
                 
                 // 招架音效处理
                 Sound pSound = Sound.BLOCK_ANVIL_LAND;
@@ -93,17 +83,19 @@ public class PostureListener implements Listener {
                 int pCount = activeParryWeapon.parryParticleCount;
                 double pSpread = activeParryWeapon.parryParticleSpread;
                 
-                victim.getWorld().playSound(victim.getLocation(), pSound, 1.0f, pPitch);
+                EffectDispatcher effects = plugin.getEffects();
+                effects.sound(victim, pSound, 1.0f, pPitch);
                 
                 if (pParticle != null) {
-                    victim.getWorld().spawnParticle(pParticle, victim.getEyeLocation().add(victim.getLocation().getDirection()), pCount, pSpread, pSpread, pSpread, 0.0);
+                    effects.particleAhead(victim, 1.0, pParticle, pCount, pSpread);
                 }
                 
                 // 给攻击者施加减益效果 (招架僵直/眩晕)
-                if (event.getDamager() instanceof LivingEntity attacker) {
+                if (ctx.getAttacker() != null) {
+                    LivingEntity attacker = ctx.getAttacker();
                     // 触发僵直 (3秒 = 60 ticks)
                     postureManager.triggerParryStun(attacker, 60);
-                    attacker.getWorld().playSound(attacker.getLocation(), Sound.ITEM_SHIELD_BREAK, 1.0f, 0.5f);
+                    effects.sound(attacker, Sound.ITEM_SHIELD_BREAK, 1.0f, 0.5f);
                 }
                 return true;
             }
@@ -111,49 +103,26 @@ public class PostureListener implements Listener {
         return false;
     }
 
-    /**
-     * 计算攻击者的护甲穿透系数
-     */
-    private double calculateAttackerAPC(EntityDamageByEntityEvent event) {
-        if (event.getDamager() instanceof LivingEntity attacker) {
-            double apc = weaponManager.getEntityArmorPenetration(attacker);
-            
-            // Add Skill Bonus if applicable
-            if (attacker instanceof Player player && plugin.getSkillManager() != null) {
-                apc += plugin.getSkillManager().getBonusArmorPenetration(player);
-            }
-            return apc;
-        } else if (event.getDamager() instanceof Projectile proj) {
-            return weaponManager.getProjectileArmorPenetration(proj.getType());
-        }
-        return 1.0;
-    }
-
     /**
      * 验证是否为有效格挡
      */
-    private boolean isValidBlock(Player victim, org.bukkit.entity.Entity attacker) {
+    private boolean isValidBlock(DamageContext ctx) {
         // 如果玩家正处于破防状态，无法格挡
-        if (postureManager.isGuardBroken(victim)) return false;
+        if (ctx.getVictimState().isGuardBroken()) return false;
         
         // 宽松的格挡判定：原版格挡状态 OR 举手状态 OR 插件记录的近期格挡动作
-        boolean isBlockingState = victim.isBlocking() || victim.isHandRaised() || plugin.isBlockingOrRecentlyBlocking(victim);
-        if (!isBlockingState) return false;
-        
-        if (attacker == null) return false;
+        if (!ctx.isVictimBlocking()) return false;
 
         // 视距朝向检查
-        Vector victimLook = victim.getEyeLocation().getDirection().setY(0).normalize();
-        Vector toAttacker = attacker.getLocation().toVector().subtract(victim.getLocation().toVector()).setY(0).normalize();
-        return victimLook.dot(toAttacker) > 0.0;
+        return ctx.getFacingDot() > 0.0;
     }
 
     /**
      * 处理格挡逻辑（体力扣除、武器耐久、穿盾伤害）
      */
-    private void handleBlocking(EntityDamageByEntityEvent event, Player victim, double apc) {
-        WeaponManager.WeaponData dataMain = weaponManager.getWeaponData(victim.getInventory().getItemInMainHand());
-        WeaponManager.WeaponData dataOff = weaponManager.getWeaponData(victim.getInventory().getItemInOffHand());
+    private void handleBlocking(EntityDamageByEntityEvent event, DamageContext ctx, Player victim, double apc) {
+        WeaponManager.WeaponData dataMain = ctx.getVictimMain();
+        WeaponManager.WeaponData dataOff = ctx.getVictimOff();
         
         // 获取主副手中防御系数的最大值
         double dcMain = (dataMain != null) ? dataMain.defenseCoefficient : 0.0;
@@ -170,17 +139,17 @@ public class PostureListener implements Listener {
         postureManager.damageStamina(victim, event.getDamage() * 2.0);
         
         // 确定执行格挡的物品（优先选择防御系数高或主手的武器）
-        org.bukkit.inventory.ItemStack blockingItem;
+        org.bukkit.inventory.EquipmentSlot blockingSlot;
         WeaponManager.WeaponData activeWeapon;
         
         if (dcMain >= dcOff && dcMain > 0) {
-            blockingItem = victim.getInventory().getItemInMainHand();
+            blockingSlot = org.bukkit.inventory.EquipmentSlot.HAND;
             activeWeapon = dataMain;
         } else {
-            blockingItem = victim.getInventory().getItemInOffHand();
+            blockingSlot = org.bukkit.inventory.EquipmentSlot.OFF_HAND;
             activeWeapon = dataOff;
         }
-        damageWeapon(victim, blockingItem, 1);
+        plugin.getDurability().damage(ctx.getVictimState(), blockingSlot, 1);
         
         // 初始化默认音效和粒子
         Sound blockSound = Sound.ITEM_SHIELD_BLOCK;
@@ -202,6 +171,7 @@ public class PostureListener implements Listener {
         }
         
         float finalPitch = pitchMin + (pitchMax - pitchMin) * (float) java.util.concurrent.ThreadLocalRandom.current().nextDouble();
+        EffectDispatcher effects = plugin.getEffects();
 
         // 判定穿刺：如果攻击者的穿透系数 (APC) 大于武器的防御系数 (DC)
         if (apc > dc) {
@@ -209,18 +179,19 @@ public class PostureListener implements Listener {
             double trueDamage = event.getDamage() * (apc - dc + 1) * 0.1;
             applyTrueDamage(victim, trueDamage);
             event.setDamage(0); // 抵消原版伤害
-            victim.getWorld().playSound(victim.getLocation(), blockSound, 0.5f, finalPitch * 1.5f); // 刺穿时音调更高
+            effects.sound(victim, blockSound, 0.5f, finalPitch * 1.5f); // 刺穿时音调更高
         } else {
             // 完美格挡：完全免伤
             event.setDamage(0);
-            victim.getWorld().playSound(victim.getLocation(), blockSound, 1.0f, finalPitch);
+            effects.sound(victim, blockSound, 1.0f, finalPitch);
         }
         
         // 粒子逻辑：仅当攻击者是“重型”生物时触发
-        if (event.getDamager() instanceof LivingEntity attacker) {
+        if (ctx.getAttacker() != null) {
+            LivingEntity attacker = ctx.getAttacker();
             boolean hasHeavy = weaponManager.hasHeavyEffect(attacker.getType());
             if (hasHeavy && blockParticle != null) {
-                victim.getWorld().spawnParticle(blockParticle, victim.getEyeLocation().add(victim.getLocation().getDirection()), blockParticleCount, blockParticleSpread, blockParticleSpread, blockParticleSpread, 0.0);
+                effects.particleAhead(victim, 1.0, blockParticle, blockParticleCount, blockParticleSpread);
             }
         }
     }
@@ -251,27 +222,4 @@ public class PostureListener implements Listener {
         victim.setHealth(Math.max(0, newHealth));
         victim.playEffect(org.bukkit.EntityEffect.HURT); // 触发受伤红光效果
     }
-
-    /**
-     * 扣除武器耐久度，包含对耐久附魔的模拟处理
-     */
-    private void damageWeapon(Player player, org.bukkit.inventory.ItemStack item, int amount) {
-        if (item == null || item.getType().getMaxDurability() <= 0) return;
-        if (!(item.getItemMeta() instanceof org.bukkit.inventory.meta.Damageable damageable)) return;
-        
-        // 模拟耐久附魔 (Unbreaking)
-        int level = item.getEnchantmentLevel(org.bukkit.enchantments.Enchantment.UNBREAKING);
-        if (level > 0 && java.util.concurrent.ThreadLocalRandom.current().nextInt(level + 1) > 0) {
-            return;
-        }
-
-        int newDamage = damageable.getDamage() + amount;
-        if (newDamage >= item.getType().getMaxDurability()) {
-            item.setAmount(0); // 武器损毁
-            player.playSound(player.getLocation(), Sound.ENTITY_ITEM_BREAK, 1.0f, 1.0f);
-        } else {
-            damageable.setDamage(newDamage);
-            item.setItemMeta(damageable);
-        }
-    }
 }
\ No newline at end of file
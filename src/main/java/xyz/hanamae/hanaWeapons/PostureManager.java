@@ -1,28 +1,17 @@
 package xyz.hanamae.hanaWeapons;
 
-import org.bukkit.Bukkit;
 import org.bukkit.Material;
 import org.bukkit.Sound;
 import org.bukkit.entity.Player;
 import org.bukkit.potion.PotionEffect;
 import org.bukkit.potion.PotionEffectType;
-import org.bukkit.scheduler.BukkitTask;
-
-import java.util.HashMap;
-import java.util.Map;
-import java.util.UUID;
 
 public class PostureManager {
 
     private final HanaWeapons plugin;
     private final WeaponManager weaponManager;
-    private final Map<UUID, Double> staminaMap = new HashMap<>(); // 0.0 - 100.0
-    private final Map<UUID, Long> guardBreakMap = new HashMap<>(); // End time
-    private final Map<UUID, Long> stunMap = new HashMap<>(); // Stun End Time
-    private final Map<UUID, Long> lastActionMap = new HashMap<>(); // Last time stamina reduced
-    private final Map<UUID, Long> fullTimeMap = new HashMap<>(); // Time when stamina reached 100
-
-    private BukkitTask regenTask;
+    // 玩家的架势、破防、僵直状态存放在 PlayerCombatState 中
+    private final MobStunRegistry mobStuns = new MobStunRegistry();
 
     public PostureManager(HanaWeapons plugin, WeaponManager weaponManager) {
         this.plugin = plugin;
@@ -30,53 +19,66 @@ public class PostureManager {
     }
 
     public void onEnable() {
-        regenTask = Bukkit.getScheduler().runTaskTimer(plugin, this::tick, 0L, 1L);
+        plugin.getCombatTicker().register(CombatTicker.Stage.POSTURE_REGEN, this::tickRegen);
+        plugin.getCombatTicker().register(CombatTicker.Stage.HUD, this::tickHud);
+        plugin.getCombatTicker().registerGlobal(() -> mobStuns.drain(System.currentTimeMillis()));
     }
 
     public void onDisable() {
-        if (regenTask != null) {
-            regenTask.cancel();
-            regenTask = null;
-        }
+        mobStuns.clear();
     }
-    
-    // ... Existing onEnable/onDisable ...
 
-    private void tick() {
-        long now = System.currentTimeMillis();
-        for (Player player : Bukkit.getOnlinePlayers()) {
-            // Check Stun
-            if (isStunned(player)) {
-                updateStunBar(player);
-                continue; // Skip regen if stunned
-            }
-            
-            if (handleGuardBreak(player, now)) continue;
-            if (shouldSkipTick(player, now)) continue;
-            
-            // Check valid defense weapon
-            double dcMain = weaponManager.getDefenseCoefficient(player.getInventory().getItemInMainHand());
-            double dcOff = weaponManager.getDefenseCoefficient(player.getInventory().getItemInOffHand());
-            if (Math.max(dcMain, dcOff) <= 0 && !isShowingFullAnimation(player, now)) continue;
+    /**
+     * 架势条阶段
+     * 架势值按闭式公式计算 (见 getStamina)，这里不做累加，只处理破防恢复这类需要定时触发的状态切换。
+     * @return 玩家是否处于僵直、破防、恢复中或满条动画中 (需要继续显示 UI)
+     */
+    private boolean tickRegen(Player player, PlayerCombatState state, long now) {
+        // Check Stun
+        if (isStunned(state, now)) return true;
+        
+        if (handleGuardBreak(player, state, now)) return true;
+
+        if (getStamina(state, now) < 100.0) {
+            // 未满且有防御武器时持续显示 (恢复中或受击/格挡后的暂停期)
+            return state.staminaRate > 0;
+        }
+        // 满了：满条动画或格挡时仍需显示
+        return isShowingFullAnimation(state, now) || plugin.isBlockingOrRecentlyBlocking(state);
+    }
 
-            processStaminaRegen(player, now);
-            updateActionBar(player);
+    /**
+     * HUD 阶段：写入僵直 / 破防 / 架势条通道，由 HudCompositor 统一发送
+     */
+    private boolean tickHud(Player player, PlayerCombatState state, long now) {
+        if (isStunned(state, now)) {
+            updateStunBar(state, now);
+        } else if (state.isGuardBroken() || hasDefenseWeapon(state) || isShowingFullAnimation(state, now)) {
+            updateActionBar(state, now);
         }
+        return false;
+    }
+
+    private boolean hasDefenseWeapon(PlayerCombatState state) {
+        plugin.getHandCache().resolve(state);
+        double dcMain = weaponManager.getDefenseCoefficient(state.main);
+        double dcOff = weaponManager.getDefenseCoefficient(state.off);
+        return Math.max(dcMain, dcOff) > 0;
     }
 
-    private boolean handleGuardBreak(Player player, long now) {
-        if (!isGuardBroken(player)) return false;
+    private boolean handleGuardBreak(Player player, PlayerCombatState state, long now) {
+        if (!state.isGuardBroken()) return false;
 
-        long timeLeft = guardBreakMap.get(player.getUniqueId()) - now;
+        long timeLeft = state.guardBreakEnd - now;
         if (timeLeft > 0) {
             applyBreakCooldowns(player);
-            updateActionBar(player);
             return true;
         }
 
         // Recovery
-        guardBreakMap.remove(player.getUniqueId());
-        staminaMap.put(player.getUniqueId(), 50.0);
+        state.guardBreakEnd = 0;
+        state.staminaBase = 50.0;
+        state.staminaBaseTime = now;
         player.sendMessage("§a§l[ 架势恢复 ]");
         player.playSound(player.getLocation(), Sound.ENTITY_PLAYER_LEVELUP, 1f, 2f);
         return true;
@@ -91,90 +93,123 @@ public class PostureManager {
         }
     }
 
-    private boolean shouldSkipTick(Player player, long now) {
-        if (!staminaMap.containsKey(player.getUniqueId())) {
-            staminaMap.put(player.getUniqueId(), 100.0);
-        }
-        
-        // 只要架势条没满，就始终 Tick (不跳过)
-        // 这样即使切了物品或者没在格挡，也能持续恢复并显示 UI
-        if (staminaMap.get(player.getUniqueId()) < 100.0) {
-            return false;
-        }
+    private boolean isShowingFullAnimation(PlayerCombatState state, long now) {
+        long fullTime = state.staminaBase < 100.0 ? getFullTime(state) : state.fullTime;
+        return fullTime != 0 && now >= fullTime && now - fullTime < 1000;
+    }
 
-        // 如果满了，则根据是否格挡/动画来决定是否跳过 (隐藏 UI)
-        boolean shouldShow = isShowingFullAnimation(player, now);
-        if (!shouldShow && !plugin.isBlockingOrRecentlyBlocking(player)) {
-            return true;
-        }
-        return false;
+    // ================== 架势值 (闭式计算) ==================
+
+    /**
+     * 计算当前架势值
+     * value = min(100, base + rate * (now - max(baseTime, regenResumeTime)))
+     * 与服务器 TPS 无关，读取开销 O(1)，空闲玩家每 tick 无需任何处理。
+     */
+    double getStamina(PlayerCombatState state, long now) {
+        if (state.isGuardBroken()) return state.staminaBase; // 破防期间冻结
+        long from = Math.max(state.staminaBaseTime, state.regenResumeTime);
+        if (state.staminaRate <= 0 || now <= from) return state.staminaBase;
+        return Math.min(100.0, state.staminaBase + state.staminaRate * (now - from));
     }
 
-    private boolean isShowingFullAnimation(Player player, long now) {
-        Long fullTime = fullTimeMap.get(player.getUniqueId());
-        return fullTime != null && now - fullTime < 1000;
+    /**
+     * 获取玩家当前架势值 (0.0 - 100.0)
+     */
+    public double getStamina(Player player) {
+        return getStamina(plugin.getCombatStates().get(player), System.currentTimeMillis());
     }
 
-    private void processStaminaRegen(Player player, long now) {
-        // Use plugin.isBlockingOrRecentlyBlocking to handle cooldown interruptions
-        if (plugin.isBlockingOrRecentlyBlocking(player)) {
-            lastActionMap.put(player.getUniqueId(), now);
-            return;
+    /**
+     * 按当前参数恢复满的时刻，不会恢复满时返回 0
+     */
+    private long getFullTime(PlayerCombatState state) {
+        if (state.staminaBase >= 100.0) return state.fullTime;
+        if (state.staminaRate <= 0 || state.isGuardBroken()) return 0;
+        long from = Math.max(state.staminaBaseTime, state.regenResumeTime);
+        return from + (long) Math.ceil((100.0 - state.staminaBase) / state.staminaRate);
+    }
+
+    /**
+     * 把到 now 为止的恢复量结算进 base，之后才能修改速度、暂停时间或扣减架势
+     */
+    private void rebase(PlayerCombatState state, long now) {
+        double value = getStamina(state, now);
+        if (value >= 100.0 && state.staminaBase < 100.0) {
+            state.fullTime = getFullTime(state); // 记录满条时刻 (满条动画)
         }
+        state.staminaBase = value;
+        state.staminaBaseTime = now;
+    }
 
-        long lastAction = lastActionMap.getOrDefault(player.getUniqueId(), 0L);
-        if (now - lastAction > 1500) {
-            double current = staminaMap.getOrDefault(player.getUniqueId(), 100.0);
-            if (current < 100.0) {
-                // 修改逻辑：恢复速度取 Min 而不是 Max
-                // 防止切到快武器回血，保持“最慢”的那个恢复速度作为惩罚
-                // 但如果有一手是空手/非武器，则忽略那一手（避免空手拖慢）
-                
-                double rateMain = weaponManager.getPostureRegenRate(player.getInventory().getItemInMainHand());
-                double rateOff = weaponManager.getPostureRegenRate(player.getInventory().getItemInOffHand());
-                
-                // 逻辑：
-                // 1. 只有当 rate > 0 时才视为有效武器速度
-                // 2. 如果两手都有武器，取较小值 (Min)，防止利用小刀快速回盾
-                // 3. 如果只有一手有武器，取该武器的值
-                // 4. 如果两手都没武器，取默认值 (2.0)
-                
-                double rate = 2.0; // 默认值
-                
-                if (rateMain > 0 && rateOff > 0) {
-                    rate = Math.min(rateMain, rateOff);
-                } else if (rateMain > 0) {
-                    rate = rateMain;
-                } else if (rateOff > 0) {
-                    rate = rateOff;
-                } else {
-                    rate = 2.0;
-                }
-
-                current = Math.min(100.0, current + rate);
-                staminaMap.put(player.getUniqueId(), current);
-
-                if (current >= 100.0) {
-                    fullTimeMap.put(player.getUniqueId(), now);
-                }
-            }
+    /**
+     * 暂停恢复直到 resumeTime (格挡、受击、僵直)
+     */
+    void pauseRegen(PlayerCombatState state, long now, long resumeTime) {
+        if (resumeTime <= state.regenResumeTime) return;
+        rebase(state, now);
+        state.regenResumeTime = resumeTime;
+    }
+
+    /**
+     * 手持武器变化后重新计算恢复速度 (由 PlayerHandCache 在重新解析时调用)
+     */
+    void onHandsChanged(PlayerCombatState state) {
+        rebase(state, System.currentTimeMillis());
+        state.staminaRate = computeRegenRate(state);
+    }
+
+    /**
+     * 恢复速度 (每毫秒)；没有防御武器时为 0 (不恢复)
+     */
+    private double computeRegenRate(PlayerCombatState state) {
+        // 手持数据刚解析完，这里直接读字段
+        double dc = Math.max(weaponManager.getDefenseCoefficient(state.main), weaponManager.getDefenseCoefficient(state.off));
+        if (dc <= 0) return 0.0;
+
+        // 修改逻辑：恢复速度取 Min 而不是 Max
+        // 防止切到快武器回血，保持“最慢”的那个恢复速度作为惩罚
+        // 但如果有一手是空手/非武器，则忽略那一手（避免空手拖慢）
+        
+        double rateMain = weaponManager.getPostureRegenRate(state.main);
+        double rateOff = weaponManager.getPostureRegenRate(state.off);
+        
+        // 逻辑：
+        // 1. 只有当 rate > 0 时才视为有效武器速度
+        // 2. 如果两手都有武器，取较小值 (Min)，防止利用小刀快速回盾
+        // 3. 如果只有一手有武器，取该武器的值
+        // 4. 如果两手都没武器，取默认值 (2.0)
+        
+        double rate = 2.0; // 默认值
+        
+        if (rateMain > 0 && rateOff > 0) {
+            rate = Math.min(rateMain, rateOff);
+        } else if (rateMain > 0) {
+            rate = rateMain;
+        } else if (rateOff > 0) {
+            rate = rateOff;
         }
+
+        // 配置中的速度是每 tick 恢复量，换算成每毫秒
+        return rate / 50.0;
     }
 
     public void damageStamina(Player player, double amount) {
-        UUID uuid = player.getUniqueId();
-        double current = staminaMap.getOrDefault(uuid, 100.0);
-        current -= amount;
+        PlayerCombatState state = plugin.getCombatStates().get(player);
+        long now = System.currentTimeMillis();
+        rebase(state, now);
+        double current = state.staminaBase - amount;
         
-        lastActionMap.put(uuid, System.currentTimeMillis());
+        // 受击后 1.5 秒内不恢复
+        state.regenResumeTime = Math.max(state.regenResumeTime, now + 1500);
 
         if (current <= 0) {
             current = 0;
+            state.staminaBase = 0;
             triggerGuardBreak(player);
         }
         
-        staminaMap.put(uuid, current);
-        updateActionBar(player);
+        state.staminaBase = current;
+        plugin.getCombatTicker().activate(state); // 架势条在下一 tick 的 HUD 阶段刷新
     }
 
     public void triggerParryStun(org.bukkit.entity.LivingEntity target, int durationTicks) {
@@ -190,48 +225,42 @@ public class PostureManager {
         
         // Record Stun (For event cancellation)
         if (target instanceof Player player) {
-            stunMap.put(player.getUniqueId(), System.currentTimeMillis() + durationMillis);
-            updateStunBar(player);
+            PlayerCombatState state = plugin.getCombatStates().get(player);
+            long now = System.currentTimeMillis();
+            state.stunEnd = now + durationMillis;
+            pauseRegen(state, now, state.stunEnd); // 僵直期间不恢复
+            plugin.getCombatTicker().activate(state);
         } else {
-            // For mobs, we can maybe add AI removal later, but potions are usually enough
-            // Or store in a temporary map if we want to cancel their attacks via events too
-            // Since mobs don't have UUIDs persisted across restarts usually, simple map is fine
-            // But for now, let's just stick to players for the map, mobs get potions.
-            // Actually, Listener needs to know if mob is stunned to cancel damage event
-            // So we should map non-player entities too?
-            // Let's use metadata for mobs, it's easier.
-            target.setMetadata("hana_stun", new org.bukkit.metadata.FixedMetadataValue(plugin, System.currentTimeMillis() + durationMillis));
+            // 生物的僵直记录在 MobStunRegistry 中 (StunListener 需要据此取消其攻击)
+            mobStuns.stun(target.getEntityId(), System.currentTimeMillis() + durationMillis);
         }
     }
     
     public boolean isStunned(org.bukkit.entity.LivingEntity entity) {
         if (entity == null) return false;
         if (entity instanceof Player player) {
-            Long end = stunMap.get(player.getUniqueId());
-            if (end == null) return false;
-            if (System.currentTimeMillis() > end) {
-                stunMap.remove(player.getUniqueId());
-                return false;
-            }
-            return true;
-        } else {
-             if (entity.hasMetadata("hana_stun")) {
-                 long end = entity.getMetadata("hana_stun").get(0).asLong();
-                 if (System.currentTimeMillis() > end) {
-                     entity.removeMetadata("hana_stun", plugin);
-                     return false;
-                 }
-                 return true;
-             }
+            return isStunned(plugin.getCombatStates().get(player), System.currentTimeMillis());
         }
-        return false;
+        return mobStuns.isStunned(entity.getEntityId(), System.currentTimeMillis());
+    }
+
+    public MobStunRegistry getMobStuns() {
+        return mobStuns;
     }
     
-    private void updateStunBar(Player player) {
-        Long end = stunMap.get(player.getUniqueId());
-        if (end != null) {
-            long left = end - System.currentTimeMillis();
-            sendActionBar(player, "§e§l[ ! 僵直 ! ] §7" + String.format("%.1f", Math.max(0, left) / 1000.0) + "s");
+    private boolean isStunned(PlayerCombatState state, long now) {
+        if (state.stunEnd == 0) return false;
+        if (now > state.stunEnd) {
+            state.stunEnd = 0;
+            return false;
+        }
+        return true;
+    }
+    
+    private void updateStunBar(PlayerCombatState state, long now) {
+        if (state.stunEnd != 0) {
+            HudCompositor hud = plugin.getHud();
+            hud.set(state, HudCompositor.Channel.STUN, hud.stunText(state.stunEnd - now));
         }
     }
 
@@ -240,9 +269,13 @@ public class PostureManager {
     }
 
     public void triggerGuardBreak(Player player, boolean applyDebuffs) {
-        if (isGuardBroken(player)) return;
+        PlayerCombatState state = plugin.getCombatStates().get(player);
+        if (state.isGuardBroken()) return;
         
-        guardBreakMap.put(player.getUniqueId(), System.currentTimeMillis() + 3000);
+        long now = System.currentTimeMillis();
+        rebase(state, now); // 破防期间架势值冻结，恢复时重置为 50
+        state.guardBreakEnd = now + 3000;
+        plugin.getCombatTicker().activate(state);
         player.playSound(player.getLocation(), Sound.ITEM_SHIELD_BREAK, 1f, 0.5f);
         player.clearActiveItem();
         
@@ -253,30 +286,28 @@ public class PostureManager {
     }
 
     public boolean isGuardBroken(Player player) {
-        return guardBreakMap.containsKey(player.getUniqueId());
+        return plugin.getCombatStates().get(player).isGuardBroken();
     }
 
-    private void updateActionBar(Player player) {
-        if (plugin.getSkillManager() != null && plugin.getSkillManager().isDrawingUI(player)) {
-            return;
-        }
-
-        if (isGuardBroken(player)) {
-            long timeLeft = guardBreakMap.get(player.getUniqueId()) - System.currentTimeMillis();
-            sendActionBar(player, "§c§l[ 破防状态 ] §7" + String.format("%.1f", timeLeft / 1000.0) + "s");
+    private void updateActionBar(PlayerCombatState state, long now) {
+        HudCompositor hud = plugin.getHud();
+        // 蓄力进度条的优先级更高，由 HudCompositor 按通道优先级处理
+        if (state.isGuardBroken()) {
+            hud.set(state, HudCompositor.Channel.GUARD_BREAK, hud.guardBreakText(state.guardBreakEnd - now));
             return;
         }
         
-        double current = staminaMap.getOrDefault(player.getUniqueId(), 100.0);
+        plugin.getHandCache().resolve(state);
+        double current = getStamina(state, now);
         
         // 只有当架势条已满，且没有在格挡，且没有播放满条动画时，才不显示
-        if (current >= 100.0 && !plugin.isBlockingOrRecentlyBlocking(player) && !isShowingFullAnimation(player, System.currentTimeMillis())) return;
+        if (current >= 100.0 && !plugin.isBlockingOrRecentlyBlocking(state) && !isShowingFullAnimation(state, now)) return;
         
         int lenMain = 0;
-        WeaponManager.WeaponData dataMain = weaponManager.getWeaponData(player.getInventory().getItemInMainHand());
+        WeaponManager.WeaponData dataMain = state.main;
         if (dataMain != null && dataMain.postureBarLength > 0) {
             boolean isTwoHandedMech = dataMain.mechanicTwoHanded;
-            boolean isInTwoHandedMode = isPlaceholder(player.getInventory().getItemInOffHand());
+            boolean isInTwoHandedMode = state.twoHanded;
             
             // 如果不是双手武器，或者处于双手模式，则计算长度
             // (即：单手持有的双手武器不贡献长度)
@@ -285,26 +316,12 @@ public class PostureManager {
             }
         }
 
-        int lenOff = weaponManager.getPostureBarLength(player.getInventory().getItemInOffHand());
+        int lenOff = weaponManager.getPostureBarLength(state.off);
         
         int bars = Math.max(lenMain, lenOff);
         if (bars <= 0) bars = weaponManager.getPostureBarLength();
         
         int fill = (int) ((current / 100.0) * bars);
-        StringBuilder sb = new StringBuilder("§e架势: §8[");
-        for (int i = 0; i < bars; i++) {
-            if (i < fill) sb.append("§6|");
-            else sb.append("§7.");
-        }
-        sb.append("§8]");
-        sendActionBar(player, sb.toString());
-    }
-
-    private void sendActionBar(Player player, String message) {
-        player.spigot().sendMessage(net.md_5.bungee.api.ChatMessageType.ACTION_BAR, new net.md_5.bungee.api.chat.TextComponent(message));
-    }
-
-    private boolean isPlaceholder(org.bukkit.inventory.ItemStack item) {
-        return item != null && item.hasItemMeta() && item.getItemMeta().getDisplayName() != null && item.getItemMeta().getDisplayName().contains("双手握持");
+        hud.set(state, HudCompositor.Channel.POSTURE, hud.postureBar(bars, fill));
     }
 }
\ No newline at end of file
@@ -0,0 +1,89 @@
+package xyz.hanamae.hanaWeapons;
+
+import org.bukkit.Bukkit;
+import org.bukkit.Location;
+import org.bukkit.entity.Entity;
+import org.bukkit.entity.LivingEntity;
+import org.bukkit.entity.Player;
+import org.bukkit.util.BoundingBox;
+
+/**
+ * 延伸攻击距离判定 (attackRange > 3.0 的武器左键空挥时使用)
+ * 只查询射线扫过的区域 (与 rayTraceEntities 相同的外扩包围盒) 内的生物，再对其碰撞箱做射线相交测试；
+ * 同一 tick 内的多次点击 (连点器、连招) 直接复用第一次的结果。
+ */
+public class ReachResolver {
+
+    // 与原 rayTraceEntities 的 raySize 一致：目标碰撞箱各方向外扩 0.5 格
+    private static final double RAY_SIZE = 0.5;
+
+    private final Location location = new Location(null, 0, 0, 0);
+    private final BoundingBox query = new BoundingBox();
+
+    // 统计：命中 / 未命中 / 射线范围内没有生物 (跳过射线测试) / 同一 tick 复用结果
+    private long hitCount;
+    private long missCount;
+    private long skipCount;
+    private long reuseCount;
+
+    /**
+     * 返回玩家视线方向 range 格内最近的生物，没有时返回 null
+     */
+    public LivingEntity resolve(Player player, PlayerCombatState state, double range) {
+        int tick = Bukkit.getCurrentTick();
+        if (state.reachResultTick == tick) {
+            reuseCount++;
+            return state.reachResult;
+        }
+        state.reachResultTick = tick;
+        state.reachResult = null;
+
+        Location at = player.getLocation(location);
+        double ox = at.getX(), oy = at.getY() + player.getEyeHeight(), oz = at.getZ();
+        float yaw = at.getYaw(), pitch = at.getPitch();
+        at.setWorld(null); // 不让复用的 Location 引用世界
+        double dx = CombatGeometry.lookX(yaw, pitch);
+        double dy = CombatGeometry.lookY(pitch);
+        double dz = CombatGeometry.lookZ(yaw, pitch);
+
+        // 射线起点到终点的包围盒，各方向外扩 RAY_SIZE
+        double ex = ox + dx * range, ey = oy + dy * range, ez = oz + dz * range;
+        query.resize(Math.min(ox, ex) - RAY_SIZE, Math.min(oy, ey) - RAY_SIZE, Math.min(oz, ez) - RAY_SIZE,
+                Math.max(ox, ex) + RAY_SIZE, Math.max(oy, ey) + RAY_SIZE, Math.max(oz, ez) + RAY_SIZE);
+
+        LivingEntity best = null;
+        double bestDistance = Double.MAX_VALUE;
+        boolean any = false;
+        for (Entity entity : player.getWorld().getNearbyEntities(query)) {
+            if (entity == player || !(entity instanceof LivingEntity candidate) || candidate.isDead()) continue;
+            any = true;
+            double distance = CombatGeometry.rayBoxDistance(ox, oy, oz, dx, dy, dz, candidate.getBoundingBox(), RAY_SIZE, range);
+            if (distance >= 0 && distance < bestDistance) {
+                bestDistance = distance;
+                best = candidate;
+            }
+        }
+
+        if (!any) skipCount++;
+        else if (best != null) hitCount++;
+        else missCount++;
+        state.reachResult = best;
+        return best;
+    }
+
+    public long getHitCount() {
+        return hitCount;
+    }
+
+    public long getMissCount() {
+        return missCount;
+    }
+
+    public long getSkipCount() {
+        return skipCount;
+    }
+
+    public long getReuseCount() {
+        return reuseCount;
+    }
+}
@@ -0,0 +1,455 @@
+package xyz.hanamae.hanaWeapons;
+
+import org.bukkit.Bukkit;
+import org.bukkit.NamespacedKey;
+import org.bukkit.configuration.file.FileConfiguration;
+import xyz.hanamae.hanaWeapons.WeaponManager.ComboStep;
+import xyz.hanamae.hanaWeapons.WeaponManager.ConfiguredPotionEffect;
+import xyz.hanamae.hanaWeapons.WeaponManager.WeaponData;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * 编译后配置的二进制缓存 (数据目录下的 cache/registry.bin)
+ * 文件头记录格式版本，以及由服务端版本、插件版本和 posture.yml、weapons.yml、weapons/ 目录下各文件内容计算出的 SHA-256；
+ * 启动时全部一致就直接解码，跳过 YAML 解析和按名字查找 Sound / Particle / 药水效果。
+ * 枚举按 ordinal 存储 (服务端版本变化时缓存自动失效)，Sound 和药水效果按注册表 key 存储。
+ */
+public class RegistryCache {
+
+    private static final int MAGIC = 0x48575243; // "HWRC"
+    private static final int FORMAT_VERSION = 2; // 2: 连招步骤的 reset_time 和 branches
+
+    private final HanaWeapons plugin;
+    private final WeaponManager manager;
+    private final File file;
+    private volatile boolean enabled = true;
+
+    public RegistryCache(HanaWeapons plugin, WeaponManager manager) {
+        this.plugin = plugin;
+        this.manager = manager;
+        this.file = new File(plugin.getDataFolder(), "cache/registry.bin");
+    }
+
+    /**
+     * 读取 config.yml 中的 registry-cache 开关 (启动和重载时调用)
+     */
+    public void loadConfig(FileConfiguration config) {
+        enabled = config.getBoolean("registry-cache", true);
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    // ================== 读取 ==================
+
+    /**
+     * 读取缓存的配置快照
+     * @return 缓存不存在、已过期或无法解码时返回 null
+     */
+    public WeaponManager.ConfigSnapshot load() {
+        if (!enabled || !file.isFile()) return null;
+        try {
+            Map<String, byte[]> sources = readSources();
+            if (sources == null) return null;
+            byte[] key = key(sources);
+            // 文件只有几 KB，整个读入堆内存；不使用内存映射 (映射在 GC 前不会释放，Windows 上之后的 save 无法替换文件)
+            ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(file.toPath()));
+            if (buffer.remaining() < 8 + key.length) return null;
+            if (buffer.getInt() != MAGIC || buffer.getInt() != FORMAT_VERSION) return null;
+            byte[] stored = new byte[key.length];
+            buffer.get(stored);
+            if (!Arrays.equals(stored, key)) return null;
+            return readSnapshot(buffer, sources);
+        } catch (IOException | RuntimeException e) {
+            plugin.getLogger().warning("Ignoring unreadable registry cache: " + e);
+            return null;
+        }
+    }
+
+    private WeaponManager.ConfigSnapshot readSnapshot(ByteBuffer in, Map<String, byte[]> sources) {
+        org.bukkit.entity.EntityType[] entityTypes = org.bukkit.entity.EntityType.values();
+        org.bukkit.Material[] materials = org.bukkit.Material.values();
+        org.bukkit.Particle[] particles = org.bukkit.Particle.values();
+
+        // posture.yml
+        int barLength = in.getInt();
+        double[] entityApc = readDoubles(in);
+        boolean[] entityHeavyEffect = readBooleans(in);
+        double[] vanillaWeaponApc = readDoubles(in);
+        if (entityApc.length != entityTypes.length || vanillaWeaponApc.length != materials.length) {
+            throw new IllegalStateException("table size mismatch");
+        }
+        int groupCount = in.getInt();
+        Map<String, long[]> groups = new HashMap<>();
+        for (int i = 0; i < groupCount; i++) {
+            String name = readString(in);
+            groups.put(name, readLongs(in));
+        }
+        WeaponManager.PostureSettings posture = new WeaponManager.PostureSettings(barLength, entityApc, entityHeavyEffect, vanillaWeaponApc, java.util.Collections.unmodifiableMap(groups));
+
+        // 上次解析时的警告
+        List<String> problems = readStrings(in);
+
+        // 武器 (weapons.yml 和 weapons/ 目录)
+        int weaponCount = in.getInt();
+        List<WeaponData> weapons = new ArrayList<>(weaponCount);
+        for (int i = 0; i < weaponCount; i++) {
+            weapons.add(readWeapon(in, entityTypes, materials, particles));
+        }
+        return new WeaponManager.ConfigSnapshot(posture, manager.buildRegistry(weapons), problems, sources);
+    }
+
+    private WeaponData readWeapon(ByteBuffer in, org.bukkit.entity.EntityType[] entityTypes, org.bukkit.Material[] materials, org.bukkit.Particle[] particles) {
+        int id = in.getInt();
+        String name = readString(in);
+        org.bukkit.Material material = materials[in.getInt()];
+        List<String> lore = readStrings(in);
+        double oneHandSpeed = in.getDouble();
+        double oneHandDamage = in.getDouble();
+        double oneHandMoveSpeed = in.getDouble();
+        double twoHandSpeed = in.getDouble();
+        double twoHandDamage = in.getDouble();
+        double twoHandMoveSpeed = in.getDouble();
+        double reduction = in.getDouble();
+        double armorPenetration = in.getDouble();
+        double defenseCoefficient = in.getDouble();
+        double postureRegenRate = in.getDouble();
+        int postureBarLength = in.getInt();
+        double attackRange = in.getDouble();
+
+        boolean mechanicTwoHanded = in.get() != 0;
+        boolean mechanicBlocking = in.get() != 0;
+        boolean mechanicParry = in.get() != 0;
+        int parryWindow = in.getInt();
+        int parryCooldown = in.getInt();
+
+        List<org.bukkit.Sound> blockSounds = readSounds(in);
+        double blockPitchMin = in.getDouble();
+        double blockPitchMax = in.getDouble();
+        List<org.bukkit.Sound> parrySounds = readSounds(in);
+        double parryPitchMin = in.getDouble();
+        double parryPitchMax = in.getDouble();
+        org.bukkit.Particle blockParticle = readParticle(in, particles);
+        int blockParticleCount = in.getInt();
+        double blockParticleSpread = in.getDouble();
+        org.bukkit.Particle parryParticle = readParticle(in, particles);
+        int parryParticleCount = in.getInt();
+        double parryParticleSpread = in.getDouble();
+
+        int debuffCount = in.getInt();
+        List<ConfiguredPotionEffect> parryDebuffs = new ArrayList<>(debuffCount);
+        for (int i = 0; i < debuffCount; i++) {
+            org.bukkit.potion.PotionEffectType type = org.bukkit.Registry.EFFECT.get(NamespacedKey.fromString(readString(in)));
+            int duration = in.getInt();
+            int amplifier = in.getInt();
+            if (type != null) parryDebuffs.add(new ConfiguredPotionEffect(type, duration, amplifier));
+        }
+
+        boolean comboEnabled = in.get() != 0;
+        int comboResetTime = in.getInt();
+        int stepCount = in.getInt();
+        List<ComboStep> comboSteps = new ArrayList<>(stepCount);
+        for (int i = 0; i < stepCount; i++) {
+            double damageMult = in.getDouble();
+            int poseModelAdd = in.getInt();
+            String actionBar = readString(in);
+            int nextStep = in.getInt();
+            int stepResetTime = in.getInt();
+            int[] branches = readInts(in);
+            comboSteps.add(new ComboStep(damageMult, poseModelAdd, actionBar, nextStep, stepResetTime, branches));
+        }
+
+        double slayerMultiplier = in.getDouble();
+        int typeCount = in.getInt();
+        Set<org.bukkit.entity.EntityType> slayerTypes = new HashSet<>();
+        for (int i = 0; i < typeCount; i++) {
+            slayerTypes.add(entityTypes[in.getInt()]);
+        }
+        Set<String> slayerGroups = new HashSet<>(readStrings(in));
+        long[] slayerMask = readLongs(in);
+        String skill = readString(in);
+        int skillPoseModel = in.getInt();
+        // 技能 ID 在每次启动时按注册顺序分配，不写入缓存
+        int skillId = plugin.getSkillRegistry().idOf(skill);
+
+        return new WeaponData(id, name, material, lore, oneHandSpeed, oneHandDamage, oneHandMoveSpeed, twoHandSpeed, twoHandDamage, twoHandMoveSpeed, reduction, armorPenetration, defenseCoefficient, postureRegenRate, postureBarLength, attackRange, mechanicTwoHanded, mechanicBlocking, mechanicParry, parryWindow, parryCooldown, blockSounds, blockPitchMin, blockPitchMax, parrySounds, parryPitchMin, parryPitchMax, blockParticle, blockParticleCount, blockParticleSpread, parryParticle, parryParticleCount, parryParticleSpread, parryDebuffs, comboEnabled, comboResetTime, comboSteps, slayerMultiplier, slayerTypes, slayerGroups, slayerMask, skill, skillId, skillPoseModel);
+    }
+
+    private static List<org.bukkit.Sound> readSounds(ByteBuffer in) {
+        int count = in.getInt();
+        List<org.bukkit.Sound> sounds = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            String key = readString(in);
+            sounds.add(key == null ? null : org.bukkit.Registry.SOUNDS.get(NamespacedKey.fromString(key)));
+        }
+        return sounds;
+    }
+
+    private static org.bukkit.Particle readParticle(ByteBuffer in, org.bukkit.Particle[] particles) {
+        int ordinal = in.getInt();
+        return ordinal < 0 ? null : particles[ordinal];
+    }
+
+    private static String readString(ByteBuffer in) {
+        int length = in.getInt();
+        if (length < 0) return null;
+        byte[] bytes = new byte[length];
+        in.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static List<String> readStrings(ByteBuffer in) {
+        int count = in.getInt();
+        List<String> list = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) list.add(readString(in));
+        return list;
+    }
+
+    private static double[] readDoubles(ByteBuffer in) {
+        double[] array = new double[in.getInt()];
+        for (int i = 0; i < array.length; i++) array[i] = in.getDouble();
+        return array;
+    }
+
+    private static boolean[] readBooleans(ByteBuffer in) {
+        boolean[] array = new boolean[in.getInt()];
+        for (int i = 0; i < array.length; i++) array[i] = in.get() != 0;
+        return array;
+    }
+
+    private static int[] readInts(ByteBuffer in) {
+        int[] array = new int[in.getInt()];
+        for (int i = 0; i < array.length; i++) array[i] = in.getInt();
+        return array;
+    }
+
+    private static long[] readLongs(ByteBuffer in) {
+        long[] array = new long[in.getInt()];
+        for (int i = 0; i < array.length; i++) array[i] = in.getLong();
+        return array;
+    }
+
+    // ================== 写入 ==================
+
+    /**
+     * 把解析结果写入缓存 (可以在异步线程调用)
+     * 缓存键使用快照记录的、解析时实际读到的内容的摘要，解析后文件又被修改时缓存不会与新内容对应
+     * 先写临时文件再替换，写到一半中断不会留下损坏的缓存
+     */
+    public void save(WeaponManager.ConfigSnapshot snapshot) {
+        if (!enabled) return;
+        File tmp = new File(file.getParentFile(), file.getName() + ".tmp");
+        try {
+            byte[] key = key(snapshot.sources);
+            Files.createDirectories(file.getParentFile().toPath());
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmp)))) {
+                out.writeInt(MAGIC);
+                out.writeInt(FORMAT_VERSION);
+                out.write(key);
+                writeSnapshot(out, snapshot);
+            }
+            Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException | RuntimeException e) {
+            plugin.getLogger().warning("Failed to write registry cache: " + e);
+            tmp.delete();
+        }
+    }
+
+    private static void writeSnapshot(DataOutputStream out, WeaponManager.ConfigSnapshot snapshot) throws IOException {
+        WeaponManager.PostureSettings posture = snapshot.posture;
+        out.writeInt(posture.barLength);
+        writeDoubles(out, posture.entityApc);
+        writeBooleans(out, posture.entityHeavyEffect);
+        writeDoubles(out, posture.vanillaWeaponApc);
+        out.writeInt(posture.entityGroups.size());
+        for (Map.Entry<String, long[]> group : posture.entityGroups.entrySet()) {
+            writeString(out, group.getKey());
+            writeLongs(out, group.getValue());
+        }
+
+        writeStrings(out, snapshot.getProblems());
+
+        List<WeaponData> weapons = snapshot.registry.getBaseWeapons();
+        out.writeInt(weapons.size());
+        for (WeaponData data : weapons) {
+            writeWeapon(out, data);
+        }
+    }
+
+    private static void writeWeapon(DataOutputStream out, WeaponData data) throws IOException {
+        out.writeInt(data.id);
+        writeString(out, data.name);
+        out.writeInt(data.material.ordinal());
+        writeStrings(out, data.lore);
+        out.writeDouble(data.oneHandSpeed);
+        out.writeDouble(data.oneHandDamage);
+        out.writeDouble(data.oneHandMoveSpeed);
+        out.writeDouble(data.twoHandSpeed);
+        out.writeDouble(data.twoHandDamage);
+        out.writeDouble(data.twoHandMoveSpeed);
+        out.writeDouble(data.reduction);
+        out.writeDouble(data.armorPenetration);
+        out.writeDouble(data.defenseCoefficient);
+        out.writeDouble(data.postureRegenRate);
+        out.writeInt(data.postureBarLength);
+        out.writeDouble(data.attackRange);
+
+        out.writeBoolean(data.mechanicTwoHanded);
+        out.writeBoolean(data.mechanicBlocking);
+        out.writeBoolean(data.mechanicParry);
+        out.writeInt(data.parryWindow);
+        out.writeInt(data.parryCooldown);
+
+        writeSounds(out, data.blockSounds);
+        out.writeDouble(data.blockPitchMin);
+        out.writeDouble(data.blockPitchMax);
+        writeSounds(out, data.parrySounds);
+        out.writeDouble(data.parryPitchMin);
+        out.writeDouble(data.parryPitchMax);
+        out.writeInt(data.blockParticle == null ? -1 : data.blockParticle.ordinal());
+        out.writeInt(data.blockParticleCount);
+        out.writeDouble(data.blockParticleSpread);
+        out.writeInt(data.parryParticle == null ? -1 : data.parryParticle.ordinal());
+        out.writeInt(data.parryParticleCount);
+        out.writeDouble(data.parryParticleSpread);
+
+        out.writeInt(data.parryDebuffs.size());
+        for (ConfiguredPotionEffect effect : data.parryDebuffs) {
+            writeString(out, effect.type.getKey().toString());
+            out.writeInt(effect.duration);
+            out.writeInt(effect.amplifier);
+        }
+
+        out.writeBoolean(data.comboEnabled);
+        out.writeInt(data.comboResetTime);
+        out.writeInt(data.comboSteps.size());
+        for (ComboStep step : data.comboSteps) {
+            out.writeDouble(step.damageMult);
+            out.writeInt(step.poseModelAdd);
+            writeString(out, step.actionBar);
+            out.writeInt(step.nextStep);
+            out.writeInt(step.resetTime);
+            writeInts(out, step.branches);
+        }
+
+        out.writeDouble(data.slayerMultiplier);
+        out.writeInt(data.slayerTypes.size());
+        for (org.bukkit.entity.EntityType type : data.slayerTypes) {
+            out.writeInt(type.ordinal());
+        }
+        writeStrings(out, new ArrayList<>(data.slayerGroups));
+        writeLongs(out, data.slayerMask);
+        writeString(out, data.skill);
+        out.writeInt(data.skillPoseModel);
+    }
+
+    private static void writeSounds(DataOutputStream out, List<org.bukkit.Sound> sounds) throws IOException {
+        out.writeInt(sounds.size());
+        for (org.bukkit.Sound sound : sounds) {
+            writeString(out, sound == null ? null : sound.getKey().toString());
+        }
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        if (value == null) {
+            out.writeInt(-1);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static void writeStrings(DataOutputStream out, List<String> values) throws IOException {
+        out.writeInt(values.size());
+        for (String value : values) writeString(out, value);
+    }
+
+    private static void writeDoubles(DataOutputStream out, double[] array) throws IOException {
+        out.writeInt(array.length);
+        for (double value : array) out.writeDouble(value);
+    }
+
+    private static void writeBooleans(DataOutputStream out, boolean[] array) throws IOException {
+        out.writeInt(array.length);
+        for (boolean value : array) out.writeBoolean(value);
+    }
+
+    private static void writeInts(DataOutputStream out, int[] array) throws IOException {
+        out.writeInt(array.length);
+        for (int value : array) out.writeInt(value);
+    }
+
+    private static void writeLongs(DataOutputStream out, long[] array) throws IOException {
+        out.writeInt(array.length);
+        for (long value : array) out.writeLong(value);
+    }
+
+    // ================== 缓存键 ==================
+
+    /**
+     * 当前磁盘上各源文件内容的 SHA-256 (顺序与 ConfigSnapshot.sources 相同)，任一源文件不存在时返回 null
+     */
+    private Map<String, byte[]> readSources() throws IOException {
+        File posture = new File(plugin.getDataFolder(), "posture.yml");
+        if (!posture.isFile()) return null;
+        List<File> files = new ArrayList<>();
+        files.add(posture);
+        files.addAll(manager.weaponSources());
+        Map<String, byte[]> sources = new LinkedHashMap<>();
+        for (File source : files) {
+            if (!source.isFile()) return null;
+            sources.put(manager.sourceName(source), sha256(Files.readAllBytes(source.toPath())));
+        }
+        return sources;
+    }
+
+    /**
+     * 服务端版本 + 插件版本 + 各源文件名和内容摘要的 SHA-256 (文件增删和改名也会改变缓存键)
+     */
+    private byte[] key(Map<String, byte[]> sources) {
+        MessageDigest digest = sha256();
+        digest.update(Bukkit.getBukkitVersion().getBytes(StandardCharsets.UTF_8));
+        digest.update((byte) 0);
+        digest.update(plugin.getDescription().getVersion().getBytes(StandardCharsets.UTF_8));
+        for (Map.Entry<String, byte[]> source : sources.entrySet()) {
+            digest.update((byte) 0);
+            digest.update(source.getKey().getBytes(StandardCharsets.UTF_8));
+            digest.update((byte) 0);
+            digest.update(source.getValue());
+        }
+        return digest.digest();
+    }
+
+    static byte[] sha256(byte[] content) {
+        return sha256().digest(content);
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
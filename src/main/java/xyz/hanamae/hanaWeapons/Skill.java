@@ -0,0 +1,72 @@
+package xyz.hanamae.hanaWeapons;
+
+import org.bukkit.configuration.ConfigurationSection;
+import org.bukkit.entity.Player;
+import xyz.hanamae.hanaWeapons.WeaponManager.WeaponData;
+
+/**
+ * 武器技能 (战技)
+ * 每个技能是同一个状态机：IDLE → CHARGING (潜行蓄力) → READY (蓄力完成) → 攻击时释放 (execute) → 冷却 → IDLE。
+ * 玩家的阶段存放在 PlayerCombatState 中，由 SkillManager 推进；技能对象只保存 skills.yml 中自己段落的参数，所有玩家共享。
+ */
+public abstract class Skill {
+
+    /**
+     * 玩家的技能阶段 (冷却由 PlayerCombatState.skillCooldownEnd 表示)
+     */
+    public enum Phase {
+        IDLE,
+        CHARGING,
+        READY
+    }
+
+    private final String name;
+    int id = SkillRegistry.NONE; // 由 SkillRegistry 分配
+
+    protected long chargeTime = 1000;   // 蓄力所需时间 (毫秒)
+    protected long cooldown = 2000;     // 技能冷却时间 (毫秒)
+    protected int vanillaCooldown = 20; // 释放后原版物品的攻击冷却 (tick)
+
+    protected Skill(String name) {
+        this.name = name;
+    }
+
+    /**
+     * 技能名 (weapons.yml 的 skill 字段和 skills.yml 的段落名)
+     */
+    public String getName() {
+        return name;
+    }
+
+    public int getId() {
+        return id;
+    }
+
+    public long getChargeTime() {
+        return chargeTime;
+    }
+
+    public long getCooldown() {
+        return cooldown;
+    }
+
+    public int getVanillaCooldown() {
+        return vanillaCooldown;
+    }
+
+    /**
+     * 读取 skills.yml 中该技能的段落 (启动和重载时在主线程调用)
+     * 子类覆盖时先调用 super.load 读取通用的蓄力和冷却参数
+     */
+    public void load(ConfigurationSection section) {
+        chargeTime = section.getLong("charge_time", 1000);
+        cooldown = section.getLong("cooldown", 2000);
+        vanillaCooldown = section.getInt("vanilla_cooldown", 20);
+    }
+
+    /**
+     * 就绪后攻击时释放技能 (状态已重置、冷却已设置、武器模型已恢复)
+     * @param data 玩家主手的武器数据
+     */
+    public abstract void execute(Player player, PlayerCombatState state, WeaponData data);
+}
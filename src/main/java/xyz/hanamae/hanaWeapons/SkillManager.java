@@ -5,11 +5,9 @@ import org.bukkit.Material;
 import org.bukkit.Sound;
 import org.bukkit.configuration.ConfigurationSection;
 import org.bukkit.configuration.file.FileConfiguration;
-import org.bukkit.configuration.file.YamlConfiguration;
 import org.bukkit.event.inventory.InventoryClickEvent;
 import org.bukkit.event.inventory.InventoryType;
 import org.bukkit.event.player.PlayerSwapHandItemsEvent;
-import org.bukkit.entity.ItemDisplay;
 import org.bukkit.entity.Player;
 import org.bukkit.event.EventHandler;
 import org.bukkit.event.EventPriority;
@@ -19,175 +17,117 @@ import org.bukkit.event.entity.EntityDamageByEntityEvent;
 import org.bukkit.event.player.PlayerInteractEvent;
 import org.bukkit.event.player.PlayerToggleSneakEvent;
 import org.bukkit.inventory.ItemStack;
-import org.bukkit.inventory.meta.ItemMeta;
-import org.bukkit.scheduler.BukkitRunnable;
-import org.bukkit.util.Transformation;
-import org.bukkit.util.Vector;
-import org.joml.AxisAngle4f;
-import org.joml.Vector3f;
-import net.md_5.bungee.api.ChatMessageType;
-import net.md_5.bungee.api.chat.TextComponent;
 
 import java.io.File;
-import java.util.HashMap;
-import java.util.Map;
-import java.util.UUID;
 
 /**
  * 技能管理器 (SkillManager)
- * 负责处理武器的特殊技能逻辑，例如大剑的"准备架势" (Square Off)。
+ * 负责推进所有武器技能共用的状态机 (IDLE → CHARGING → READY → 释放 → 冷却)，具体技能见 SkillRegistry。
  * 主要功能：
  * 1. 监听玩家潜行 (Shift) 事件来切换架势。
  * 2. 切换武器模型 (CustomModelData) 以展示特殊动作。
- * 3. 处理架势下的攻击逻辑 (冲刺、特效、伤害)。
+ * 3. 就绪后攻击时按武器的技能 ID 分派给对应技能执行。
  */
 public class SkillManager implements Listener {
 
     private final HanaWeapons plugin;
     private final WeaponManager weaponManager;
     
-    // 记录玩家开始潜行的时间，用于计算蓄力进度
-    private final Map<UUID, Long> sneakStartTimes = new HashMap<>();
-    
-    // 记录玩家是否已经蓄力完成 (进入就绪状态)
-    private final Map<UUID, Boolean> readyState = new HashMap<>();
-    
-    // 记录技能冷却时间
-    private final Map<UUID, Long> skillCooldowns = new HashMap<>();
-    
-    // 记录当前正在释放技能的玩家及其额外的护甲穿透属性
-    private final Map<UUID, Double> activeSkillBonusAP = new HashMap<>();
-
-    // 技能类型常量
-    private static final String SKILL_SQUARE_OFF = "SQUARE_OFF";
+    private final SkillRegistry skills;
 
-    // ==========================================
-    // "准备架势" (Square Off) 的配置缓存
-    // ==========================================
-    private long squareOffChargeTime = 1000;      // 蓄力所需时间 (毫秒)
-    private double squareOffDamageMult = 1.5;     // 伤害倍率
-    private double squareOffArmorPen = 1.5;       // 技能期间的额外穿甲系数
-    private long squareOffCooldown = 2000;        // 技能冷却时间 (毫秒)
-    private double squareOffDashVelocity = 1.5;   // 冲刺速度
-
-    // Display Entity 配置 (目前已弃用，改用 CustomModelData 切换)
-    private boolean useDisplayEntity = false;
-    private int invisibleModelData = 0;
-    private Vector3f poseTranslation = new Vector3f(0.0f, 0.0f, 0.0f); 
-    private Vector3f poseScale = new Vector3f(1.0f, 1.0f, 1.0f);
-    private org.joml.Quaternionf poseRotation = new org.joml.Quaternionf(); 
+    // 蓄力阶段、开始时间、技能冷却和技能期间的额外穿甲存放在 PlayerCombatState 中；
+    // 各技能的参数由对应的 Skill 对象从 skills.yml 自己的段落读取
 
     public SkillManager(HanaWeapons plugin, WeaponManager weaponManager) {
         this.plugin = plugin;
         this.weaponManager = weaponManager;
+        this.skills = plugin.getSkillRegistry();
         loadConfig();      // 加载配置文件
-        startTickTask();   // 启动每 tick 运行的任务 (用于更新 UI)
+        // 注册架势蓄力阶段 (用于更新 UI)
+        plugin.getCombatTicker().register(CombatTicker.Stage.STANCE_CHARGE, this::tickStance);
     }
 
     /**
      * 加载 skills.yml 配置文件
      */
     public void loadConfig() {
+        try {
+            applyConfig(readConfig());
+        } catch (RuntimeException e) {
+            plugin.getLogger().log(java.util.logging.Level.SEVERE, "Failed to load skills.yml, skill settings keep their defaults. Fix the file and run /hw reload", e);
+        }
+    }
+
+    /**
+     * 读取并解析 skills.yml (不修改任何字段，可以在异步线程调用)
+     * 语法错误时抛出 IllegalStateException，重载失败并把错误告诉执行者，而不是当作空配置
+     */
+    public FileConfiguration readConfig() {
         File file = new File(plugin.getDataFolder(), "skills.yml");
         if (!file.exists()) {
             plugin.saveResource("skills.yml", false);
         }
-        FileConfiguration config = YamlConfiguration.loadConfiguration(file);
-        
-        // 尝试读取 Square Off 技能的配置段落
-        ConfigurationSection section = config.getConfigurationSection("skills." + SKILL_SQUARE_OFF);
-        if (section == null) {
-            // 兼容旧配置结构
-            section = config.getConfigurationSection(SKILL_SQUARE_OFF);
-        }
-        
-        if (section != null) {
-            squareOffChargeTime = section.getLong("charge_time", 1000);
-            squareOffDamageMult = section.getDouble("damage_multiplier", 1.5);
-            squareOffArmorPen = section.getDouble("armor_penetration", 1.5);
-            squareOffCooldown = section.getLong("cooldown", 2000);
-            squareOffDashVelocity = section.getDouble("dash_velocity", 1.5);
-            
-            useDisplayEntity = section.getBoolean("use_display_entity", false);
-            invisibleModelData = section.getInt("invisible_model_data", 0);
-            
-            // 加载 Display Entity 的变换参数 (如果启用)
-            if (section.contains("pose_translation")) {
-                java.util.List<Double> list = section.getDoubleList("pose_translation");
-                if (list.size() >= 3) {
-                    poseTranslation = new Vector3f(list.get(0).floatValue(), list.get(1).floatValue(), list.get(2).floatValue());
-                }
+        return weaponManager.readYaml(file);
+    }
+
+    /**
+     * 应用 skills.yml 中的技能参数 (主线程)
+     */
+    public void applyConfig(FileConfiguration config) {
+        for (Skill skill : skills.all()) {
+            // 每个技能读取自己的配置段落
+            ConfigurationSection section = config.getConfigurationSection("skills." + skill.getName());
+            if (section == null) {
+                // 兼容旧配置结构
+                section = config.getConfigurationSection(skill.getName());
+            }
+            if (section != null) {
+                skill.load(section);
             }
-            if (section.contains("pose_rotation_degrees")) {
-                java.util.List<Double> list = section.getDoubleList("pose_rotation_degrees");
-                if (list.size() >= 3) {
-                     float radX = (float) Math.toRadians(list.get(0));
-                     float radY = (float) Math.toRadians(list.get(1));
-                     float radZ = (float) Math.toRadians(list.get(2));
-                     poseRotation = new org.joml.Quaternionf().rotationXYZ(radX, radY, radZ);
-                 }
-             }
         }
     }
 
     /**
-     * 启动一个每 tick (0.05秒) 运行的任务
-     * 用于检查玩家的蓄力进度并显示 Action Bar 提示
+     * 架势蓄力阶段 (每 tick)
+     * 检查玩家的蓄力进度并显示 Action Bar 提示
+     * @return 玩家是否仍处于架势中
      */
-    private void startTickTask() {
-        new BukkitRunnable() {
-            @Override
-            public void run() {
-                long now = System.currentTimeMillis();
-                for (Player player : Bukkit.getOnlinePlayers()) {
-                    checkStanceProgress(player, now);
-                }
-            }
-        }.runTaskTimer(plugin, 1L, 1L);
+    private boolean tickStance(Player player, PlayerCombatState state, long now) {
+        checkStanceProgress(player, state, now);
+        return state.skillPhase != Skill.Phase.IDLE;
     }
 
     /**
      * 检查并显示玩家的架势蓄力进度条
      */
-    private void checkStanceProgress(Player player, long now) {
-        if (!player.isSneaking()) return; // 只有潜行时才检查
+    private void checkStanceProgress(Player player, PlayerCombatState state, long now) {
+        if (state.skillPhase == Skill.Phase.IDLE || !player.isSneaking()) return; // 只有蓄力中才检查
         
-        // 获取手持武器数据
-        WeaponManager.WeaponData data = weaponManager.getWeaponData(player.getInventory().getItemInMainHand());
-        // 只有配置了 SQUARE_OFF 技能的武器才生效
-        if (data == null || data.skill == null || !data.skill.equalsIgnoreCase(SKILL_SQUARE_OFF)) return;
+        // 获取手持武器数据 (缓存)
+        WeaponManager.WeaponData data = plugin.getHandCache().resolve(state).main;
+        // 只有手持开始蓄力时的技能武器才生效
+        if (data == null || data.skillId != state.skillId) return;
+        Skill skill = skills.get(state.skillId);
+        if (skill == null) return;
         
         // 检查冷却
-        if (skillCooldowns.containsKey(player.getUniqueId())) {
-            long cdEnd = skillCooldowns.get(player.getUniqueId());
-            if (now < cdEnd) {
-                return; // 冷却中不显示进度条
-            }
+        if (now < state.skillCooldownEnd) {
+            return; // 冷却中不显示进度条
         }
 
-        Long start = sneakStartTimes.get(player.getUniqueId());
-        if (start == null) return;
-
-        long elapsed = now - start;
+        long elapsed = now - state.sneakStartTime;
         
         // 如果蓄力时间已到
-        if (elapsed >= squareOffChargeTime) {
-            if (!readyState.getOrDefault(player.getUniqueId(), false)) {
-                readyState.put(player.getUniqueId(), true); // 标记为就绪
+        if (elapsed >= skill.getChargeTime()) {
+            if (state.skillPhase != Skill.Phase.READY) {
+                state.skillPhase = Skill.Phase.READY; // 标记为就绪
                 player.playSound(player.getLocation(), Sound.BLOCK_NOTE_BLOCK_CHIME, 1.0f, 1.5f); // 提示音
             }
-            sendActionBar(player, "§b§l[ ! 准备就绪 ! ]");
+            plugin.getHud().set(state, HudCompositor.Channel.STANCE_CHARGE, plugin.getHud().stanceReady());
         } else {
-            // 显示蓄力进度条
-            int totalBars = 20;
-            int filledBars = (int) ((elapsed / (double) squareOffChargeTime) * totalBars);
-            StringBuilder sb = new StringBuilder("§e准备架势: §8[");
-            for (int i = 0; i < totalBars; i++) {
-                if (i < filledBars) sb.append("§a|");
-                else sb.append("§7.");
-            }
-            sb.append("§8]");
-            sendActionBar(player, sb.toString());
+            // 显示蓄力进度条 (预生成)
+            int filledBars = (int) ((elapsed / (double) skill.getChargeTime()) * HudCompositor.STANCE_BAR_LENGTH);
+            plugin.getHud().set(state, HudCompositor.Channel.STANCE_CHARGE, plugin.getHud().stanceBar(filledBars));
         }
     }
 
@@ -207,18 +147,18 @@ public class SkillManager implements Listener {
             }
         
             WeaponManager.WeaponData data = weaponManager.getWeaponData(player.getInventory().getItemInMainHand());
-            if (data != null && data.skill != null && data.skill.equalsIgnoreCase(SKILL_SQUARE_OFF)) {
+            if (data != null && skills.get(data.skillId) != null) {
+                PlayerCombatState state = plugin.getCombatStates().get(player);
                 // 检查冷却
-                if (skillCooldowns.containsKey(player.getUniqueId())) {
-                    if (System.currentTimeMillis() < skillCooldowns.get(player.getUniqueId())) {
-                         player.sendMessage("§c技能冷却中...");
-                         return;
-                    }
+                if (System.currentTimeMillis() < state.skillCooldownEnd) {
+                     player.sendMessage("§c技能冷却中...");
+                     return;
                 }
                 
                 // 记录开始时间，标记未就绪
-                sneakStartTimes.put(player.getUniqueId(), System.currentTimeMillis());
-                readyState.put(player.getUniqueId(), false);
+                state.skillPhase = Skill.Phase.CHARGING;
+                state.skillId = data.skillId;
+                state.sneakStartTime = System.currentTimeMillis();
                 
                 // 切换武器模型到 "姿态模式"
                 if (data.skillPoseModel > 0) {
@@ -231,10 +171,11 @@ public class SkillManager implements Listener {
 
                 // 临时隐藏副手物品 (视觉隐藏)
                 hideOffhandVisual(player);
+                plugin.getCombatTicker().activate(state);
             }
         } else {
             // 当玩家松开 Shift (停止潜行)
-            if (sneakStartTimes.containsKey(player.getUniqueId())) {
+            if (isDrawingUI(player)) {
                 exitStance(player);
             }
         }
@@ -284,8 +225,9 @@ public class SkillManager implements Listener {
      * 退出架势，恢复状态和物品
      */
     private void exitStance(Player player) {
-        sneakStartTimes.remove(player.getUniqueId());
-        readyState.remove(player.getUniqueId());
+        PlayerCombatState state = plugin.getCombatStates().get(player);
+        state.skillPhase = Skill.Phase.IDLE;
+        state.skillId = SkillRegistry.NONE;
         
         // 恢复武器模型到正常状态
         WeaponManager.WeaponData data = weaponManager.getWeaponData(player.getInventory().getItemInMainHand());
@@ -315,8 +257,8 @@ public class SkillManager implements Listener {
         
         // 如果玩家左键点击 (攻击) 且已经就绪
         if (event.getAction() == Action.LEFT_CLICK_AIR || event.getAction() == Action.LEFT_CLICK_BLOCK) {
-            if (readyState.getOrDefault(player.getUniqueId(), false)) {
-                executeSquareOff(player); // 执行技能
+            if (plugin.getCombatStates().get(player).skillPhase == Skill.Phase.READY) {
+                executeSkill(player); // 执行技能
                 event.setCancelled(true); // 取消原版挥动，使用我们的自定义逻辑
             }
         }
@@ -328,11 +270,12 @@ public class SkillManager implements Listener {
      */
     @EventHandler(priority = EventPriority.HIGH)
     public void onEntityDamage(EntityDamageByEntityEvent event) {
-        if (!(event.getDamager() instanceof Player)) return;
-        Player player = (Player) event.getDamager();
+        DamageContext ctx = plugin.getDamageContext(event);
+        Player player = ctx.getAttackerPlayer();
+        if (player == null) return;
         
-        if (readyState.getOrDefault(player.getUniqueId(), false)) {
-            executeSquareOff(player);
+        if (ctx.getAttackerState().skillPhase == Skill.Phase.READY) {
+            executeSkill(player);
             event.setCancelled(true); // 取消这次普通攻击，转而执行技能的冲刺伤害逻辑
         }
     }
@@ -346,7 +289,7 @@ public class SkillManager implements Listener {
         Player player = (Player) event.getWhoClicked();
 
         // 只有处于架势状态的玩家需要处理
-        if (sneakStartTimes.containsKey(player.getUniqueId())) {
+        if (isDrawingUI(player)) {
             // 如果点击的是副手槽位 (45 是副手槽位的通常索引，但在不同容器中可能不同，所以用 SlotType 判断更稳)
             if (event.getSlotType() == InventoryType.SlotType.QUICKBAR && event.getSlot() == 40) { // 40 is offhand in player inventory
                  // 阻止操作并强制刷新背包，确保护甲/物品显示正确
@@ -369,100 +312,56 @@ public class SkillManager implements Listener {
      */
     @EventHandler(priority = EventPriority.HIGH)
     public void onSwapHand(PlayerSwapHandItemsEvent event) {
-        if (sneakStartTimes.containsKey(event.getPlayer().getUniqueId())) {
+        if (isDrawingUI(event.getPlayer())) {
             event.setCancelled(true);
         }
     }
 
     /**
-     * 执行 "准备架势" 的攻击逻辑
+     * 释放就绪的技能：重置状态、设置冷却，再交给技能执行
      */
-    private void executeSquareOff(Player player) {
+    private void executeSkill(Player player) {
         // 清除状态
-        readyState.remove(player.getUniqueId());
-        sneakStartTimes.remove(player.getUniqueId());
+        PlayerCombatState state = plugin.getCombatStates().get(player);
+        Skill skill = skills.get(state.skillId);
+        state.skillPhase = Skill.Phase.IDLE;
+        state.skillId = SkillRegistry.NONE;
+
+        ItemStack item = player.getInventory().getItemInMainHand();
+        WeaponManager.WeaponData data = weaponManager.getWeaponData(item);
+        if (skill == null || data == null || data.skillId != skill.getId()) {
+            // 就绪后换了武器：只退出架势
+            revertWeaponModel(player, item);
+            restoreOffhandVisual(player);
+            return;
+        }
         
         // 设置冷却
-        skillCooldowns.put(player.getUniqueId(), System.currentTimeMillis() + squareOffCooldown);
-        if (player.getInventory().getItemInMainHand().getType() != Material.AIR) {
-             player.setCooldown(player.getInventory().getItemInMainHand().getType(), 20); // 给原版物品也加个短冷却
+        state.skillCooldownEnd = System.currentTimeMillis() + skill.getCooldown();
+        if (item.getType() != Material.AIR) {
+             player.setCooldown(item.getType(), skill.getVanillaCooldown()); // 给原版物品也加个短冷却
         }
 
         // 恢复武器模型
-        revertWeaponModel(player, player.getInventory().getItemInMainHand());
+        revertWeaponModel(player, item);
         
         // 恢复副手物品 (视觉)
         restoreOffhandVisual(player);
         
-        // 执行冲刺和特效
-        performDashAttack(player);
-    }
-
-    /**
-     * 处理冲刺、特效和伤害判定
-     */
-    private void performDashAttack(Player player) {
-        Vector dir = player.getLocation().getDirection().normalize();
-        
-        // 1. 冲刺位移 (Y轴微调防止卡地)
-        player.setVelocity(dir.multiply(squareOffDashVelocity).setY(0.2));
-        
-        // 2. 播放音效
-        player.playSound(player.getLocation(), Sound.ENTITY_PLAYER_ATTACK_SWEEP, 1.0f, 0.5f);
-        
-        // 获取武器的攻击范围配置
-        WeaponManager.WeaponData data = weaponManager.getWeaponData(player.getInventory().getItemInMainHand());
-        double range = (data != null) ? data.attackRange : 1.5;
-        
-        // 计算技能基础伤害 (基于武器双手伤害)
-        double baseDamage = (data != null) ? data.twoHandDamage : 10.0;
-
-        // 3. 播放粒子特效 (优化位置和形态)
-        // 计算玩家前方 range 格的位置
-        org.bukkit.Location origin = player.getEyeLocation().add(dir.clone().multiply(range));
-        
-        // A. 生成一个横扫粒子 (增加水平打击感)
-        player.getWorld().spawnParticle(org.bukkit.Particle.SWEEP_ATTACK, origin, 1);
-        
-        // 记录技能期间的额外穿甲
-        activeSkillBonusAP.put(player.getUniqueId(), squareOffArmorPen);
-        
-        // 4. 延迟伤害判定 (模拟冲刺过程中的碰撞)
-        new BukkitRunnable() {
-            int ticks = 0;
-            @Override
-            public void run() {
-                if (ticks++ > 5) { // 持续 5 ticks (0.25秒)
-                    this.cancel(); 
-                    activeSkillBonusAP.remove(player.getUniqueId());
-                    return; 
-                }
-                // 对周围实体造成伤害，范围使用配置的 range
-                for (org.bukkit.entity.Entity e : player.getNearbyEntities(range, range, range)) {
-                    if (e instanceof org.bukkit.entity.LivingEntity && e != player) {
-                        // 造成伤害：武器基础伤害 * 技能倍率
-                        ((org.bukkit.entity.LivingEntity) e).damage(baseDamage * squareOffDamageMult, player);
-                        e.getWorld().playSound(e.getLocation(), Sound.ENTITY_IRON_GOLEM_DAMAGE, 1.0f, 1.0f);
-                    }
-                }
-            }
-        }.runTaskTimer(plugin, 0L, 1L);
+        // 执行技能 (冲刺、特效、伤害等)
+        skill.execute(player, state, data);
     }
     
     // 辅助方法：判断玩家是否正在蓄力 (绘制UI中)
     public boolean isDrawingUI(Player player) {
-        return sneakStartTimes.containsKey(player.getUniqueId());
+        return plugin.getCombatStates().get(player).skillPhase != Skill.Phase.IDLE;
     }
     
     // 获取当前技能提供的额外穿甲
     public double getBonusArmorPenetration(Player player) {
-        return activeSkillBonusAP.getOrDefault(player.getUniqueId(), 0.0);
+        return plugin.getCombatStates().get(player).skillBonusAP;
     }
 
-    private void sendActionBar(Player player, String message) {
-        player.spigot().sendMessage(ChatMessageType.ACTION_BAR, new TextComponent(message));
-    }
-    
     /**
      * 核心方法：更新武器模型 (设置 CustomModelData)
      * 包含 NBT 备份逻辑，确保能还原
@@ -473,8 +372,8 @@ public class SkillManager implements Listener {
         
         // 1. 尝试读取已保存的 Base ID (原始ID)
         int baseId = -1;
-        if (meta.getPersistentDataContainer().has(new org.bukkit.NamespacedKey(plugin, "hana_weapon_id"), org.bukkit.persistence.PersistentDataType.INTEGER)) {
-            baseId = meta.getPersistentDataContainer().get(new org.bukkit.NamespacedKey(plugin, "hana_weapon_id"), org.bukkit.persistence.PersistentDataType.INTEGER);
+        if (meta.getPersistentDataContainer().has(weaponManager.getWeaponIdKey(), org.bukkit.persistence.PersistentDataType.INTEGER)) {
+            baseId = meta.getPersistentDataContainer().get(weaponManager.getWeaponIdKey(), org.bukkit.persistence.PersistentDataType.INTEGER);
         }
         
         // 2. 如果没读到，尝试从当前的 ModelData 反推
@@ -491,7 +390,7 @@ public class SkillManager implements Listener {
         
         // 3. 将 Base ID 写入 NBT (持久化保存，防止丢失)
         if (baseId > 0) {
-            meta.getPersistentDataContainer().set(new org.bukkit.NamespacedKey(plugin, "hana_weapon_id"), org.bukkit.persistence.PersistentDataType.INTEGER, baseId);
+            meta.getPersistentDataContainer().set(weaponManager.getWeaponIdKey(), org.bukkit.persistence.PersistentDataType.INTEGER, baseId);
         }
 
         // 4. 应用新的 CustomModelData
@@ -512,8 +411,8 @@ public class SkillManager implements Listener {
         int baseId = -1;
         
         // 1. 优先从 NBT 读取 Base ID
-        if (meta.getPersistentDataContainer().has(new org.bukkit.NamespacedKey(plugin, "hana_weapon_id"), org.bukkit.persistence.PersistentDataType.INTEGER)) {
-            baseId = meta.getPersistentDataContainer().get(new org.bukkit.NamespacedKey(plugin, "hana_weapon_id"), org.bukkit.persistence.PersistentDataType.INTEGER);
+        if (meta.getPersistentDataContainer().has(weaponManager.getWeaponIdKey(), org.bukkit.persistence.PersistentDataType.INTEGER)) {
+            baseId = meta.getPersistentDataContainer().get(weaponManager.getWeaponIdKey(), org.bukkit.persistence.PersistentDataType.INTEGER);
         }
         
         // 2. 如果没有 NBT，尝试反推
@@ -0,0 +1,64 @@
+package xyz.hanamae.hanaWeapons;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * 技能注册表
+ * 每个技能注册时分配一个整数 ID；加载武器时把 weapons.yml 中的 skill 名解析为 ID 存入 WeaponData，
+ * 运行时按 ID 直接取数组元素，不再比较字符串。
+ * 技能在插件启用时、加载武器之前注册，之后不再变化 (加载线程只读)。
+ */
+public final class SkillRegistry {
+
+    public static final int NONE = -1;
+
+    private Skill[] skills = new Skill[0];
+    private final Map<String, Integer> ids = new HashMap<>();
+
+    /**
+     * 注册技能并分配 ID
+     */
+    public int register(Skill skill) {
+        int id = skills.length;
+        skills = Arrays.copyOf(skills, id + 1);
+        skills[id] = skill;
+        skill.id = id;
+        ids.put(skill.getName().toUpperCase(Locale.ROOT), id);
+        return id;
+    }
+
+    /**
+     * 技能名 (不区分大小写) 对应的 ID，未知或为 null 时返回 NONE
+     */
+    public int idOf(String name) {
+        if (name == null) return NONE;
+        Integer id = ids.get(name.toUpperCase(Locale.ROOT));
+        return id != null ? id : NONE;
+    }
+
+    /**
+     * 按 ID 获取技能，NONE 时返回 null
+     */
+    public Skill get(int id) {
+        return id >= 0 && id < skills.length ? skills[id] : null;
+    }
+
+    /**
+     * 所有技能名 (用于提示未知技能)
+     */
+    public List<String> names() {
+        List<String> names = new java.util.ArrayList<>(skills.length);
+        for (Skill skill : skills) {
+            names.add(skill.getName());
+        }
+        return names;
+    }
+
+    public List<Skill> all() {
+        return List.of(skills);
+    }
+}
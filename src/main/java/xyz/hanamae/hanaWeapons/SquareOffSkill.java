@@ -0,0 +1,152 @@
+package xyz.hanamae.hanaWeapons;
+
+import org.bukkit.Sound;
+import org.bukkit.configuration.ConfigurationSection;
+import org.bukkit.entity.Player;
+import org.bukkit.scheduler.BukkitRunnable;
+import org.bukkit.util.Vector;
+import org.joml.Vector3f;
+import xyz.hanamae.hanaWeapons.WeaponManager.WeaponData;
+
+/**
+ * "准备架势" (Square Off)
+ * 潜行蓄力后攻击：向视线方向冲刺，沿冲刺路径对周围生物造成武器双手伤害 * 倍率，并在冲刺期间获得额外穿甲。
+ */
+public class SquareOffSkill extends Skill {
+
+    public static final String NAME = "SQUARE_OFF";
+
+    private final HanaWeapons plugin;
+
+    private double damageMult = 1.5;     // 伤害倍率
+    private double armorPen = 1.5;       // 技能期间的额外穿甲系数
+    private double dashVelocity = 1.5;   // 冲刺速度
+
+    // Display Entity 配置 (目前已弃用，改用 CustomModelData 切换)
+    private boolean useDisplayEntity = false;
+    private int invisibleModelData = 0;
+    private Vector3f poseTranslation = new Vector3f(0.0f, 0.0f, 0.0f);
+    private Vector3f poseScale = new Vector3f(1.0f, 1.0f, 1.0f);
+    private org.joml.Quaternionf poseRotation = new org.joml.Quaternionf();
+
+    public SquareOffSkill(HanaWeapons plugin) {
+        super(NAME);
+        this.plugin = plugin;
+    }
+
+    @Override
+    public void load(ConfigurationSection section) {
+        super.load(section);
+        damageMult = section.getDouble("damage_multiplier", 1.5);
+        armorPen = section.getDouble("armor_penetration", 1.5);
+        dashVelocity = section.getDouble("dash_velocity", 1.5);
+
+        useDisplayEntity = section.getBoolean("use_display_entity", false);
+        invisibleModelData = section.getInt("invisible_model_data", 0);
+
+        // 加载 Display Entity 的变换参数 (如果启用)
+        if (section.contains("pose_translation")) {
+            java.util.List<Double> list = section.getDoubleList("pose_translation");
+            if (list.size() >= 3) {
+                poseTranslation = new Vector3f(list.get(0).floatValue(), list.get(1).floatValue(), list.get(2).floatValue());
+            }
+        }
+        if (section.contains("pose_rotation_degrees")) {
+            java.util.List<Double> list = section.getDoubleList("pose_rotation_degrees");
+            if (list.size() >= 3) {
+                float radX = (float) Math.toRadians(list.get(0));
+                float radY = (float) Math.toRadians(list.get(1));
+                float radZ = (float) Math.toRadians(list.get(2));
+                poseRotation = new org.joml.Quaternionf().rotationXYZ(radX, radY, radZ);
+            }
+        }
+    }
+
+    /**
+     * 处理冲刺、特效和伤害判定
+     */
+    @Override
+    public void execute(Player player, PlayerCombatState state, WeaponData data) {
+        // 本次释放复用的坐标 (冲刺期间每 tick 读取玩家位置)
+        org.bukkit.Location at = player.getLocation();
+        float yaw = at.getYaw(), pitch = at.getPitch();
+        double dirX = CombatGeometry.lookX(yaw, pitch);
+        double dirY = CombatGeometry.lookY(pitch);
+        double dirZ = CombatGeometry.lookZ(yaw, pitch);
+
+        // 1. 冲刺位移 (Y轴微调防止卡地)
+        player.setVelocity(new Vector(dirX * dashVelocity, 0.2, dirZ * dashVelocity));
+
+        // 2. 播放音效
+        player.playSound(at, Sound.ENTITY_PLAYER_ATTACK_SWEEP, 1.0f, 0.5f);
+
+        // 武器的攻击范围
+        double range = data.attackRange;
+
+        // 计算技能基础伤害 (基于武器双手伤害)
+        double baseDamage = data.twoHandDamage;
+
+        // 3. 播放粒子特效 (优化位置和形态)
+        // A. 在玩家前方 range 格处生成一个横扫粒子 (增加水平打击感)
+        plugin.getEffects().particle(at.getWorld(),
+                at.getX() + dirX * range, at.getY() + player.getEyeHeight() + dirY * range, at.getZ() + dirZ * range,
+                org.bukkit.Particle.SWEEP_ATTACK, 1, 0.0);
+
+        // 记录技能期间的额外穿甲
+        state.skillBonusAP = armorPen;
+
+        // 4. 延迟伤害判定 (模拟冲刺过程中的碰撞)
+        // 沿玩家实际移动的路径扫过半径为 range 的胶囊体，每个目标每次释放只受一次伤害
+        double halfHeight = player.getHeight() * 0.5;
+        double damage = baseDamage * damageMult;
+        new BukkitRunnable() {
+            int ticks = 0;
+            // 上一次扫掠结束的位置 (身体中心)
+            double fromX = at.getX();
+            double fromY = at.getY() + halfHeight;
+            double fromZ = at.getZ();
+            final java.util.Set<java.util.UUID> hit = new java.util.HashSet<>();
+            // 扫掠的查询范围 (每次扫掠 resize 复用)
+            final org.bukkit.util.BoundingBox query = new org.bukkit.util.BoundingBox();
+
+            @Override
+            public void run() {
+                if (ticks++ > 5 || !player.isOnline()) { // 持续 6 ticks (0.3秒)
+                    this.cancel();
+                    state.skillBonusAP = 0.0;
+                    return;
+                }
+                player.getLocation(at);
+                double toX = at.getX();
+                double toY = at.getY() + halfHeight;
+                double toZ = at.getZ();
+                // 移动不足半个 range 时先不查询，下次扫掠的线段会覆盖这段路径 (最后一 tick 必定结算)
+                if (ticks <= 5 && CombatGeometry.distanceSq(fromX, fromY, fromZ, toX, toY, toZ) < range * range * 0.25) return;
+
+                sweep(toX, toY, toZ);
+                fromX = toX;
+                fromY = toY;
+                fromZ = toZ;
+            }
+
+            /**
+             * 对 from→to 的胶囊体结算伤害
+             * 查询框和命中音效的坐标都是复用的；getNearbyEntities 返回的集合由 Bukkit 创建，无法避免。
+             */
+            private void sweep(double toX, double toY, double toZ) {
+                query.resize(
+                        Math.min(fromX, toX) - range, Math.min(fromY, toY) - range, Math.min(fromZ, toZ) - range,
+                        Math.max(fromX, toX) + range, Math.max(fromY, toY) + range, Math.max(fromZ, toZ) + range);
+                for (org.bukkit.entity.Entity e : player.getWorld().getNearbyEntities(query,
+                        e -> e instanceof org.bukkit.entity.LivingEntity && e != player)) {
+                    if (hit.contains(e.getUniqueId())) continue;
+                    if (!CombatGeometry.capsuleIntersectsBox(fromX, fromY, fromZ, toX, toY, toZ, range, e.getBoundingBox())) continue;
+                    hit.add(e.getUniqueId());
+                    // 造成伤害：武器基础伤害 * 技能倍率
+                    ((org.bukkit.entity.LivingEntity) e).damage(damage, player);
+                    plugin.getEffects().sound(e, Sound.ENTITY_IRON_GOLEM_DAMAGE, 1.0f, 1.0f);
+                }
+            }
+        }.runTaskTimer(plugin, 0L, 1L);
+    }
+}
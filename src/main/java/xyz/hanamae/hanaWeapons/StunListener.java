@@ -8,14 +8,15 @@ import org.bukkit.event.block.BlockPlaceEvent;
 import org.bukkit.event.entity.EntityDamageByEntityEvent;
 import org.bukkit.event.player.PlayerInteractEvent;
 import org.bukkit.event.player.PlayerItemConsumeEvent;
-import org.bukkit.entity.LivingEntity;
 import org.bukkit.entity.Player;
 
 public class StunListener implements Listener {
     
+    private final HanaWeapons plugin;
     private final PostureManager postureManager;
     
-    public StunListener(PostureManager postureManager) {
+    public StunListener(HanaWeapons plugin, PostureManager postureManager) {
+        this.plugin = plugin;
         this.postureManager = postureManager;
     }
     
@@ -28,7 +29,7 @@ public class StunListener implements Listener {
     
     @EventHandler(priority = EventPriority.HIGHEST, ignoreCancelled = true)
     public void onDamage(EntityDamageByEntityEvent event) {
-        if (event.getDamager() instanceof LivingEntity attacker && postureManager.isStunned(attacker)) {
+        if (plugin.getDamageContext(event).isAttackerStunned()) {
             event.setCancelled(true);
         }
     }
@@ -0,0 +1,130 @@
+package xyz.hanamae.hanaWeapons;
+
+import xyz.hanamae.hanaWeapons.WeaponManager.WeaponData;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * 增量重载的结果：新解析的武器与当前注册表按基础 ID 逐把比较
+ * 内容没有变化的武器沿用当前的 WeaponData 对象，新快照中只有新增和变化的条目是新对象，
+ * 手持缓存、物品模板和手中的物品只需要为这些条目刷新。
+ */
+public final class WeaponDiff {
+
+    // WeaponData 的所有公开实例字段，按声明顺序比较
+    private static final Field[] FIELDS = instanceFields();
+
+    private final WeaponManager.ConfigSnapshot snapshot;
+    private final List<WeaponData> added = new ArrayList<>();
+    private final List<WeaponData> removed = new ArrayList<>();
+    // 新数据 -> 变化的字段名
+    private final Map<WeaponData, List<String>> changed = new LinkedHashMap<>();
+    // 被替换或删除的旧对象 (手持这些对象的玩家需要刷新)
+    private final Set<WeaponData> stale = Collections.newSetFromMap(new IdentityHashMap<>());
+
+    private WeaponDiff(WeaponManager manager, WeaponRegistry current, WeaponManager.ConfigSnapshot parsedSnapshot) {
+        List<WeaponData> parsed = parsedSnapshot.registry.getBaseWeapons();
+        Map<Integer, WeaponData> previous = new LinkedHashMap<>();
+        for (WeaponData data : current.getBaseWeapons()) {
+            previous.put(data.id, data);
+        }
+
+        List<WeaponData> merged = new ArrayList<>(parsed.size());
+        Set<Integer> seen = new HashSet<>();
+        for (WeaponData data : parsed) {
+            seen.add(data.id);
+            WeaponData old = previous.get(data.id);
+            if (old == null) {
+                added.add(data);
+                merged.add(data);
+                continue;
+            }
+            List<String> fields = old == data ? Collections.emptyList() : changedFields(old, data);
+            if (fields.isEmpty()) {
+                merged.add(old);
+            } else {
+                changed.put(data, fields);
+                stale.add(old);
+                merged.add(data);
+            }
+        }
+        for (WeaponData old : previous.values()) {
+            if (!seen.contains(old.id)) {
+                removed.add(old);
+                stale.add(old);
+            }
+        }
+        this.snapshot = new WeaponManager.ConfigSnapshot(parsedSnapshot.posture, manager.buildRegistry(merged),
+                parsedSnapshot.getProblems(), parsedSnapshot.sources);
+    }
+
+    /**
+     * 把新解析的快照与 current 比较，生成沿用未变化对象的快照
+     */
+    static WeaponDiff compute(WeaponManager manager, WeaponRegistry current, WeaponManager.ConfigSnapshot parsed) {
+        return new WeaponDiff(manager, current, parsed);
+    }
+
+    private static List<String> changedFields(WeaponData a, WeaponData b) {
+        List<String> fields = new ArrayList<>();
+        for (Field field : FIELDS) {
+            try {
+                if (!Objects.deepEquals(field.get(a), field.get(b))) fields.add(field.getName());
+            } catch (IllegalAccessException e) {
+                fields.add(field.getName());
+            }
+        }
+        return fields;
+    }
+
+    private static Field[] instanceFields() {
+        List<Field> fields = new ArrayList<>();
+        for (Field field : WeaponData.class.getFields()) {
+            if (!Modifier.isStatic(field.getModifiers())) fields.add(field);
+        }
+        return fields.toArray(new Field[0]);
+    }
+
+    /**
+     * 要启用的新快照
+     */
+    public WeaponManager.ConfigSnapshot getSnapshot() {
+        return snapshot;
+    }
+
+    public List<WeaponData> getAdded() {
+        return added;
+    }
+
+    public List<WeaponData> getRemoved() {
+        return removed;
+    }
+
+    public Map<WeaponData, List<String>> getChanged() {
+        return changed;
+    }
+
+    /**
+     * 没有任何武器新增、删除或变化
+     */
+    public boolean isEmpty() {
+        return added.isEmpty() && removed.isEmpty() && changed.isEmpty();
+    }
+
+    /**
+     * 该 WeaponData 是否已被替换或删除
+     */
+    public boolean isStale(WeaponData data) {
+        return data != null && stale.contains(data);
+    }
+}
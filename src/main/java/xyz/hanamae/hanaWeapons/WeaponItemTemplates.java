@@ -0,0 +1,214 @@
+package xyz.hanamae.hanaWeapons;
+
+import org.bukkit.Bukkit;
+import org.bukkit.Material;
+import org.bukkit.NamespacedKey;
+import org.bukkit.attribute.Attribute;
+import org.bukkit.attribute.AttributeModifier;
+import org.bukkit.inventory.EquipmentSlotGroup;
+import org.bukkit.inventory.ItemStack;
+import org.bukkit.inventory.meta.ItemMeta;
+import org.bukkit.persistence.PersistentDataType;
+import xyz.hanamae.hanaWeapons.WeaponManager.WeaponData;
+
+import java.util.IdentityHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * 武器物品模板 (预编译)
+ * 加载/重载时为每把武器按握持模式生成模板物品：格挡组件、攻击属性修饰符、PDC ID 和基础模型都已写好。
+ * 刷新手持物品时只需克隆模板，再复制耐久、附魔、PDC 等单件字段。
+ */
+public final class WeaponItemTemplates {
+
+    private static final UUID SPEED_UUID = UUID.fromString("FA233E1C-4180-4865-B01B-BCCE9785ACA3");
+    private static final UUID DAMAGE_UUID = UUID.fromString("CB3F55D3-645C-4F38-A497-9C13A33DB5CF");
+    private static final UUID MOVE_SPEED_UUID = UUID.fromString("662A6B8D-DA3E-4C1C-8813-96EA6097278D");
+
+    static final String PLACEHOLDER_NAME = "§7[ 双手握持 ]";
+
+    private final Map<WeaponData, Entry> entries;
+    private final NamespacedKey weaponIdKey;
+    private final NamespacedKey placeholderKey;
+
+    /**
+     * 单把武器的模板组
+     */
+    private static final class Entry {
+        final ItemStack oneHand;
+        final ItemStack twoHand; // 非双手武器时与 oneHand 相同
+        final ItemStack placeholder;
+
+        Entry(ItemStack oneHand, ItemStack twoHand, ItemStack placeholder) {
+            this.oneHand = oneHand;
+            this.twoHand = twoHand;
+            this.placeholder = placeholder;
+        }
+    }
+
+    private WeaponItemTemplates(Map<WeaponData, Entry> entries, NamespacedKey weaponIdKey, NamespacedKey placeholderKey) {
+        this.entries = entries;
+        this.weaponIdKey = weaponIdKey;
+        this.placeholderKey = placeholderKey;
+    }
+
+    /**
+     * 为注册表中的每把基础武器编译模板 (需在主线程调用)
+     */
+    public static WeaponItemTemplates compile(WeaponRegistry registry, NamespacedKey weaponIdKey, NamespacedKey placeholderKey) {
+        return compile(registry, weaponIdKey, placeholderKey, null);
+    }
+
+    /**
+     * 同上，previous 中已有的 WeaponData (同一对象) 直接复用其模板
+     */
+    public static WeaponItemTemplates compile(WeaponRegistry registry, NamespacedKey weaponIdKey, NamespacedKey placeholderKey, WeaponItemTemplates previous) {
+        Map<WeaponData, Entry> entries = new IdentityHashMap<>();
+        for (WeaponData data : registry.getBaseWeapons()) {
+            Entry reused = previous != null ? previous.entries.get(data) : null;
+            if (reused != null) {
+                entries.put(data, reused);
+                continue;
+            }
+            ItemStack oneHand = buildWeapon(data.material, data, false, weaponIdKey);
+            ItemStack twoHand = data.mechanicTwoHanded ? buildWeapon(data.material, data, true, weaponIdKey) : oneHand;
+            entries.put(data, new Entry(oneHand, twoHand, buildPlaceholder(data.material, data, placeholderKey)));
+        }
+        return new WeaponItemTemplates(entries, weaponIdKey, placeholderKey);
+    }
+
+    /**
+     * 根据握持模式生成新的武器物品，保留原物品的单件字段
+     * @return 新物品；原物品没有 ItemMeta 时返回 null
+     */
+    public ItemStack createWeapon(ItemStack source, WeaponData data, boolean twoHanded) {
+        ItemMeta sourceMeta = source.getItemMeta();
+        if (sourceMeta == null) return null;
+
+        ItemStack template;
+        Entry entry = entries.get(data);
+        if (entry != null && source.getType() == data.material) {
+            template = twoHanded ? entry.twoHand : entry.oneHand;
+        } else {
+            // 慢路径：重载后残留的旧数据，或材质与配置不一致的旧物品
+            template = buildWeapon(source.getType(), data, twoHanded, weaponIdKey);
+        }
+
+        ItemStack result = template.clone();
+        ItemMeta meta = result.getItemMeta();
+        copyInstanceFields(sourceMeta, meta);
+        // 双手武器单手握持时强制使用基础模型 (避免带着连招姿态回到单手)，其余情况保留当前姿态模型
+        if (sourceMeta.hasCustomModelData() && (twoHanded || !data.mechanicTwoHanded)) {
+            meta.setCustomModelData(sourceMeta.getCustomModelData());
+        }
+        sourceMeta.getPersistentDataContainer().copyTo(meta.getPersistentDataContainer(), true);
+        meta.getPersistentDataContainer().set(weaponIdKey, PersistentDataType.INTEGER, data.id);
+        result.setItemMeta(meta);
+        return result;
+    }
+
+    /**
+     * 生成副手占位符，复制主手武器的耐久、附魔和描述
+     */
+    public ItemStack createPlaceholder(ItemStack mainHand, WeaponData data) {
+        Entry entry = entries.get(data);
+        ItemStack result = (entry != null && mainHand.getType() == data.material)
+                ? entry.placeholder.clone()
+                : buildPlaceholder(mainHand.getType(), data, placeholderKey);
+        ItemMeta mainMeta = mainHand.getItemMeta();
+        if (mainMeta != null) {
+            ItemMeta meta = result.getItemMeta();
+            copyInstanceFields(mainMeta, meta);
+            meta.setDisplayName(PLACEHOLDER_NAME);
+            result.setItemMeta(meta);
+        }
+        return result;
+    }
+
+    private static ItemStack buildWeapon(Material material, WeaponData data, boolean twoHanded, NamespacedKey weaponIdKey) {
+        boolean asTwoHanded = twoHanded && data.mechanicTwoHanded;
+        ItemStack item = shouldBlock(data, asTwoHanded) ? createBlockingBase(material, data.reduction) : new ItemStack(material);
+
+        ItemMeta meta = item.getItemMeta();
+        double speed = asTwoHanded ? data.twoHandSpeed : data.oneHandSpeed;
+        double damage = asTwoHanded ? data.twoHandDamage : data.oneHandDamage;
+        double moveSpeed = asTwoHanded ? data.twoHandMoveSpeed : data.oneHandMoveSpeed;
+        setWeaponAttributes(meta, speed, damage, moveSpeed);
+        meta.setCustomModelData(data.id);
+        meta.getPersistentDataContainer().set(weaponIdKey, PersistentDataType.INTEGER, data.id);
+        item.setItemMeta(meta);
+        return item;
+    }
+
+    private static ItemStack buildPlaceholder(Material material, WeaponData data, NamespacedKey placeholderKey) {
+        ItemStack placeholder = new ItemStack(material);
+        ItemMeta meta = placeholder.getItemMeta();
+        if (meta != null) {
+            meta.setDisplayName(PLACEHOLDER_NAME);
+            // 副手始终显示原始模型，即使主手处于连招姿态
+            meta.setCustomModelData(data.id);
+            // 占位符标记：握持状态的唯一凭据，重新登录后据此恢复双手模式
+            meta.getPersistentDataContainer().set(placeholderKey, PersistentDataType.BYTE, (byte) 1);
+            meta.removeAttributeModifier(Attribute.ATTACK_SPEED);
+            meta.removeAttributeModifier(Attribute.ATTACK_DAMAGE);
+            meta.removeAttributeModifier(Attribute.MOVEMENT_SPEED);
+            placeholder.setItemMeta(meta);
+        }
+        return placeholder;
+    }
+
+    /**
+     * 判断当前握持模式下是否启用右键格挡
+     */
+    private static boolean shouldBlock(WeaponData data, boolean twoHanded) {
+        if (!data.mechanicBlocking) return false;
+        // 双手武器只有在双手握持状态下才能防御；单手武器 (例如盾牌) 始终可以防御
+        return !data.mechanicTwoHanded || twoHanded;
+    }
+
+    private static ItemStack createBlockingBase(Material material, double reduction) {
+        try {
+            String componentsNbt = String.format(Locale.ROOT,
+                "%s[consumable={consume_seconds:72000,animation:'block',has_consume_particles:false,can_always_use:true},blocks_attacks={damage_reductions:[{base:0.0f,factor:%.2ff}]}]",
+                material.getKey().toString(), reduction
+            );
+            return Bukkit.getUnsafe().modifyItemStack(new ItemStack(material), componentsNbt);
+        } catch (Exception e) {
+            return new ItemStack(material);
+        }
+    }
+
+    private static void setWeaponAttributes(ItemMeta meta, double speed, double damage, double moveSpeed) {
+        meta.removeAttributeModifier(Attribute.ATTACK_SPEED);
+        meta.removeAttributeModifier(Attribute.ATTACK_DAMAGE);
+        meta.removeAttributeModifier(Attribute.MOVEMENT_SPEED);
+
+        meta.addAttributeModifier(Attribute.ATTACK_SPEED, new AttributeModifier(SPEED_UUID, "generic.attack_speed", speed,
+                AttributeModifier.Operation.ADD_NUMBER, EquipmentSlotGroup.MAINHAND));
+        meta.addAttributeModifier(Attribute.ATTACK_DAMAGE, new AttributeModifier(DAMAGE_UUID, "generic.attack_damage", damage - 1.0,
+                AttributeModifier.Operation.ADD_NUMBER, EquipmentSlotGroup.MAINHAND));
+
+        if (moveSpeed != 0.0) {
+            meta.addAttributeModifier(Attribute.MOVEMENT_SPEED, new AttributeModifier(MOVE_SPEED_UUID, "generic.movement_speed", moveSpeed,
+                    AttributeModifier.Operation.ADD_SCALAR, EquipmentSlotGroup.MAINHAND));
+        }
+    }
+
+    /**
+     * 复制单件字段：显示名称、描述、耐久、附魔
+     */
+    private static void copyInstanceFields(ItemMeta source, ItemMeta target) {
+        if (source.hasDisplayName()) target.setDisplayName(source.getDisplayName());
+        if (source.hasLore()) target.setLore(source.getLore());
+        if (source instanceof org.bukkit.inventory.meta.Damageable s && target instanceof org.bukkit.inventory.meta.Damageable t) {
+            if (s.hasDamage()) t.setDamage(s.getDamage());
+        }
+        if (source.hasEnchants()) {
+            for (Map.Entry<org.bukkit.enchantments.Enchantment, Integer> entry : source.getEnchants().entrySet()) {
+                target.addEnchant(entry.getKey(), entry.getValue(), true);
+            }
+        }
+    }
+}
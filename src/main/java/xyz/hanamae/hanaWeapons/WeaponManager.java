@@ -5,7 +5,6 @@ import org.bukkit.configuration.file.FileConfiguration;
 import org.bukkit.configuration.file.YamlConfiguration;
 
 import java.io.File;
-import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.logging.Level;
@@ -13,99 +12,528 @@ import java.util.Collections;
 
 public class WeaponManager {
 
+    // 并行解析 weapons/ 目录时的最大线程数
+    private static final int MAX_LOADER_THREADS = 4;
+
     private final HanaWeapons plugin;
-    private final Map<Integer, WeaponData> weapons = new HashMap<>();
-    private final Map<org.bukkit.entity.EntityType, Double> entityApcMap = new HashMap<>();
-    private final Map<org.bukkit.entity.EntityType, Boolean> entityHeavyEffectMap = new HashMap<>();
-    private int postureBarLength = 20;
-    private static final java.util.Set<org.bukkit.entity.EntityType> GROUP_UNDEAD = java.util.EnumSet.of(
-            org.bukkit.entity.EntityType.SKELETON,
-            org.bukkit.entity.EntityType.STRAY,
-            org.bukkit.entity.EntityType.WITHER_SKELETON,
-            org.bukkit.entity.EntityType.ZOMBIE,
-            org.bukkit.entity.EntityType.HUSK,
-            org.bukkit.entity.EntityType.DROWNED,
-            org.bukkit.entity.EntityType.ZOMBIE_VILLAGER,
-            org.bukkit.entity.EntityType.ZOMBIFIED_PIGLIN,
-            org.bukkit.entity.EntityType.ZOGLIN,
-            org.bukkit.entity.EntityType.SKELETON_HORSE,
-            org.bukkit.entity.EntityType.ZOMBIE_HORSE,
-            org.bukkit.entity.EntityType.PHANTOM,
-            org.bukkit.entity.EntityType.WITHER
-    );
+    private final org.bukkit.NamespacedKey weaponIdKey;
+    private final org.bukkit.NamespacedKey placeholderKey;
+    // 当前生效的武器注册表快照，重载时整体替换
+    private volatile WeaponRegistry registry = WeaponRegistry.EMPTY;
+    // 与注册表对应的预编译物品模板
+    private volatile WeaponItemTemplates itemTemplates;
+    // 当前生效的 posture.yml 配置，重载时整体替换
+    private volatile PostureSettings posture = PostureSettings.defaults();
+    // 编译后配置的二进制缓存 (启动时跳过 YAML 解析)
+    private final RegistryCache cache;
+    // 上次解析的结果 (按文件)，增量重载时内容没有变化的文件直接沿用；只在持有 parseLock 时访问
+    private final Object parseLock = new Object();
+    private PostureSource lastPosture;
+    private Map<String, WeaponSource> lastSources = Collections.emptyMap();
 
     public WeaponManager(HanaWeapons plugin) {
         this.plugin = plugin;
+        this.weaponIdKey = new org.bukkit.NamespacedKey(plugin, "hana_weapon_id");
+        this.placeholderKey = new org.bukkit.NamespacedKey(plugin, "hana_placeholder");
+        this.cache = new RegistryCache(plugin, this);
+        this.itemTemplates = WeaponItemTemplates.compile(registry, weaponIdKey, placeholderKey);
+    }
+
+    /**
+     * 武器 Base ID 在 PDC 中的键 (共享实例，避免每次调用都 new NamespacedKey)
+     */
+    public org.bukkit.NamespacedKey getWeaponIdKey() {
+        return weaponIdKey;
+    }
+
+    /**
+     * 双手握持占位符在 PDC 中的标记键 (BYTE)
+     */
+    public org.bukkit.NamespacedKey getPlaceholderKey() {
+        return placeholderKey;
+    }
+
+    /**
+     * 判断物品是否为双手握持占位符
+     * 只认 PDC 标记，不依赖显示名称，改名的物品不会被误判
+     */
+    public boolean isPlaceholder(org.bukkit.inventory.ItemStack item) {
+        return item != null && item.hasItemMeta() && item.getPersistentDataContainer().has(placeholderKey, org.bukkit.persistence.PersistentDataType.BYTE);
+    }
+
+    /**
+     * posture.yml 解析结果 (不可变)
+     * 查找表按 EntityType.ordinal() / Material.ordinal() 索引
+     */
+    static final class PostureSettings {
+        final int barLength;
+        final double[] entityApc;
+        final boolean[] entityHeavyEffect;
+        final double[] vanillaWeaponApc;
+        // 实体分组 (entity_groups)，组名大写 -> EntityType.ordinal() 位图
+        final Map<String, long[]> entityGroups;
+
+        PostureSettings(int barLength, double[] entityApc, boolean[] entityHeavyEffect, double[] vanillaWeaponApc, Map<String, long[]> entityGroups) {
+            this.barLength = barLength;
+            this.entityApc = entityApc;
+            this.entityHeavyEffect = entityHeavyEffect;
+            this.vanillaWeaponApc = vanillaWeaponApc;
+            this.entityGroups = entityGroups;
+        }
+
+        static PostureSettings defaults() {
+            return new PostureSettings(20,
+                    filled(new double[org.bukkit.entity.EntityType.values().length], 1.0),
+                    filled(new boolean[org.bukkit.entity.EntityType.values().length], true),
+                    filled(new double[org.bukkit.Material.values().length], 1.0),
+                    Collections.emptyMap());
+        }
+    }
+
+    /**
+     * 配置快照：一次完整解析 posture.yml 和 weapons.yml 的结果 (不可变)
+     * 由 parse 在任意线程生成，apply 在主线程一次性替换；解析失败时旧快照保持不变。
+     */
+    public static final class ConfigSnapshot {
+        final PostureSettings posture;
+        final WeaponRegistry registry;
+        private final List<String> problems;
+        // 文件名 -> 实际解析的内容的 SHA-256 (posture.yml 在前，然后按 weaponSources 的顺序)，用作缓存键
+        final Map<String, byte[]> sources;
+
+        ConfigSnapshot(PostureSettings posture, WeaponRegistry registry, List<String> problems, Map<String, byte[]> sources) {
+            this.posture = posture;
+            this.registry = registry;
+            this.problems = Collections.unmodifiableList(problems);
+            this.sources = Collections.unmodifiableMap(sources);
+        }
+
+        public WeaponRegistry getRegistry() {
+            return registry;
+        }
+
+        /**
+         * 解析过程中的警告 (无效的实体名、材质、分组等)
+         */
+        public List<String> getProblems() {
+            return problems;
+        }
+    }
+
+    /**
+     * 重新解析 posture.yml 和全部武器定义文件 (不修改生效的配置，可以在异步线程调用)
+     */
+    public ConfigSnapshot parse() {
+        return parseSources(true);
+    }
+
+    /**
+     * 只重新解析内容发生变化 (或新增) 的文件，其余文件沿用上次的解析结果，再重新合并 (不修改生效的配置，可以在异步线程调用)
+     * 按文件内容的摘要判断，不依赖文件监视事件。posture.yml 的实体分组变化时特攻位图随之变化，全部武器文件重新解析
+     */
+    public ConfigSnapshot parseIncremental() {
+        return parseSources(false);
+    }
+
+    private ConfigSnapshot parseSources(boolean full) {
+        synchronized (parseLock) {
+            List<String> problems = new java.util.ArrayList<>();
+            Map<String, byte[]> digests = new java.util.LinkedHashMap<>();
+            PostureSource parsedPosture = parsePostureConfig(full ? null : lastPosture);
+            digests.put("posture.yml", parsedPosture.digest);
+            problems.addAll(parsedPosture.problems);
+            boolean reuse = !full && lastPosture != null && sameGroups(parsedPosture.settings.entityGroups, lastPosture.settings.entityGroups);
+            List<WeaponSource> sources = parseWeaponSources(parsedPosture.settings.entityGroups, reuse ? lastSources : Collections.emptyMap());
+            WeaponRegistry parsedRegistry = merge(sources, problems, digests);
+
+            Map<String, WeaponSource> byName = new java.util.HashMap<>();
+            for (WeaponSource source : sources) {
+                byName.put(source.name, source);
+            }
+            lastPosture = parsedPosture;
+            lastSources = byName;
+            logProblems(problems);
+            return new ConfigSnapshot(parsedPosture.settings, parsedRegistry, problems, digests);
+        }
+    }
+
+    /**
+     * 启用快照 (主线程)
+     */
+    public void apply(ConfigSnapshot snapshot) {
+        posture = snapshot.posture;
+        publish(snapshot.registry);
+        plugin.getLogger().info("Loaded " + registry.size() + " weapons (including variants).");
+    }
+
+    /**
+     * 同步加载全部配置 (插件启动时使用)
+     * 源文件未改变时直接读取二进制缓存，否则解析 YAML 并重新写入缓存
+     */
+    public void loadWeapons() {
+        cache.loadConfig(plugin.getConfig());
+        long start = System.nanoTime();
+        ConfigSnapshot snapshot = cache.load();
+        if (snapshot != null) {
+            long loaded = System.nanoTime();
+            for (String problem : snapshot.getProblems()) {
+                plugin.getLogger().warning(problem);
+            }
+            apply(snapshot);
+            plugin.getLogger().info(String.format("Weapon registry loaded from binary cache in %.1f ms (decode %.1f ms).",
+                    (System.nanoTime() - start) / 1_000_000.0, (loaded - start) / 1_000_000.0));
+            return;
+        }
+        try {
+            snapshot = parse();
+        } catch (RuntimeException e) {
+            plugin.getLogger().log(Level.SEVERE, "Failed to load the weapon configuration, no weapons are registered. Fix the file and run /hw reload", e);
+            return;
+        }
+        long parsed = System.nanoTime();
+        apply(snapshot);
+        long applied = System.nanoTime();
+        cache.save(snapshot);
+        plugin.getLogger().info(String.format("Weapon registry loaded from YAML in %.1f ms (parse %.1f ms)%s.",
+                (applied - start) / 1_000_000.0, (parsed - start) / 1_000_000.0,
+                cache.isEnabled() ? String.format(", cache written in %.1f ms", (System.nanoTime() - applied) / 1_000_000.0) : ""));
+    }
+
+    /**
+     * 获取配置的二进制缓存
+     */
+    public RegistryCache getCache() {
+        return cache;
+    }
+
+    /**
+     * 记录一条解析警告 (解析结束后按文件顺序统一输出，并行解析时日志顺序也是确定的)
+     */
+    private static void warn(List<String> problems, String message) {
+        problems.add(message);
+    }
+
+    /**
+     * 读取源文件的内容 (解析和缓存键使用同一份字节，解析期间文件被修改也不会不一致)
+     */
+    private byte[] readSource(File file) {
+        try {
+            return java.nio.file.Files.readAllBytes(file.toPath());
+        } catch (java.io.IOException e) {
+            throw new IllegalStateException("Failed to read " + sourceName(file) + ": " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * 解析 YAML 内容
+     * 与 YamlConfiguration.loadConfiguration 不同，语法错误时抛出异常 (而不是返回空配置)，
+     * 这样写错的文件会让整次解析失败，当前生效的配置保持不变，而不是被解析成"没有武器"
+     */
+    private YamlConfiguration loadYaml(File file, byte[] content) {
+        YamlConfiguration config = new YamlConfiguration();
+        try {
+            config.loadFromString(new String(content, java.nio.charset.StandardCharsets.UTF_8));
+        } catch (org.bukkit.configuration.InvalidConfigurationException e) {
+            throw new IllegalStateException("Failed to read " + sourceName(file) + ": " + e.getMessage(), e);
+        }
+        return config;
+    }
+
+    /**
+     * 读取并解析其他模块的 YAML 文件 (例如 skills.yml)，语法错误时同样抛出 IllegalStateException
+     */
+    YamlConfiguration readYaml(File file) {
+        return loadYaml(file, readSource(file));
+    }
+
+    private void logProblems(List<String> problems) {
+        for (String problem : problems) {
+            plugin.getLogger().warning(problem);
+        }
     }
 
-    private void loadPostureConfig() {
+    /**
+     * posture.yml 的解析结果
+     */
+    private static final class PostureSource {
+        final byte[] digest; // 解析的内容的 SHA-256
+        final List<String> problems = new java.util.ArrayList<>();
+        PostureSettings settings;
+
+        PostureSource(byte[] digest) {
+            this.digest = digest;
+        }
+    }
+
+    /**
+     * 解析 posture.yml，内容与 previous 相同时直接返回 previous
+     */
+    private PostureSource parsePostureConfig(PostureSource previous) {
         File file = new File(plugin.getDataFolder(), "posture.yml");
         if (!file.exists()) {
             plugin.saveResource("posture.yml", false);
         }
-        FileConfiguration config = YamlConfiguration.loadConfiguration(file);
+        byte[] content = readSource(file);
+        byte[] digest = RegistryCache.sha256(content);
+        if (previous != null && java.util.Arrays.equals(previous.digest, digest)) return previous;
+        PostureSource source = new PostureSource(digest);
+        List<String> problems = source.problems;
+        FileConfiguration config = loadYaml(file, content);
         
-        postureBarLength = config.getInt("settings.bar_length", 20);
+        int barLength = config.getInt("settings.bar_length", 20);
         
-        entityApcMap.clear();
+        int entityTypes = org.bukkit.entity.EntityType.values().length;
+        double[] apcTable = filled(new double[entityTypes], config.getDouble("settings.default_apc", 1.0));
+        int apcCount = 0;
         ConfigurationSection section = config.getConfigurationSection("entities");
         if (section != null) {
             for (String key : section.getKeys(false)) {
                 try {
                     org.bukkit.entity.EntityType type = org.bukkit.entity.EntityType.valueOf(key.toUpperCase());
-                    entityApcMap.put(type, section.getDouble(key));
+                    apcTable[type.ordinal()] = section.getDouble(key);
+                    apcCount++;
                 } catch (IllegalArgumentException e) {
-                    plugin.getLogger().warning("Invalid entity type in posture.yml (entities): " + key);
+                    warn(problems, "Invalid entity type in posture.yml (entities): " + key);
                 }
             }
         }
 
-        entityHeavyEffectMap.clear();
+        boolean[] heavyTable = filled(new boolean[entityTypes], true); // 未配置的实体默认产生粒子
+        int effectCount = 0;
         ConfigurationSection effectSection = config.getConfigurationSection("entity_impact_effects");
         if (effectSection != null) {
             for (String key : effectSection.getKeys(false)) {
                 try {
                     org.bukkit.entity.EntityType type = org.bukkit.entity.EntityType.valueOf(key.toUpperCase());
                     if (effectSection.isConfigurationSection(key)) {
-                         entityHeavyEffectMap.put(type, effectSection.getBoolean(key + ".heavy_particle", false));
+                         heavyTable[type.ordinal()] = effectSection.getBoolean(key + ".heavy_particle", false);
                     } else {
                          // Fallback for simple boolean
-                         entityHeavyEffectMap.put(type, effectSection.getBoolean(key));
+                         heavyTable[type.ordinal()] = effectSection.getBoolean(key);
                     }
+                    effectCount++;
                 } catch (IllegalArgumentException e) {
-                    plugin.getLogger().warning("Invalid entity type in posture.yml (effects): " + key);
+                    warn(problems, "Invalid entity type in posture.yml (effects): " + key);
                 }
             }
         }
-        
-        plugin.getLogger().info("Loaded posture config: " + entityApcMap.size() + " APC entities, " + entityHeavyEffectMap.size() + " effect entities.");
+
+        double[] vanillaTable = loadVanillaWeapons(config.getConfigurationSection("vanilla_weapons"), problems);
+
+        ConfigurationSection groupSection = config.getConfigurationSection("entity_groups");
+        if (groupSection == null) {
+            // 旧版 posture.yml 没有分组定义，使用插件自带的默认分组
+            java.io.InputStream in = plugin.getResource("posture.yml");
+            if (in != null) {
+                groupSection = YamlConfiguration.loadConfiguration(new java.io.InputStreamReader(in, java.nio.charset.StandardCharsets.UTF_8))
+                        .getConfigurationSection("entity_groups");
+            }
+        }
+        Map<String, long[]> groups = new java.util.HashMap<>();
+        if (groupSection != null) {
+            for (String group : groupSection.getKeys(false)) {
+                long[] mask = new long[entityMaskLength()];
+                for (String typeName : groupSection.getStringList(group)) {
+                    try {
+                        setBit(mask, org.bukkit.entity.EntityType.valueOf(typeName.toUpperCase()));
+                    } catch (IllegalArgumentException e) {
+                        warn(problems, "Invalid entity type in posture.yml (entity_groups." + group + "): " + typeName);
+                    }
+                }
+                groups.put(group.toUpperCase(), mask);
+            }
+        }
+
+        plugin.getLogger().info("Loaded posture config: " + apcCount + " APC entities, " + effectCount + " effect entities.");
+        source.settings = new PostureSettings(barLength, apcTable, heavyTable, vanillaTable, Collections.unmodifiableMap(groups));
+        return source;
+    }
+
+    private static boolean sameGroups(Map<String, long[]> a, Map<String, long[]> b) {
+        if (!a.keySet().equals(b.keySet())) return false;
+        for (Map.Entry<String, long[]> group : a.entrySet()) {
+            if (!java.util.Arrays.equals(group.getValue(), b.get(group.getKey()))) return false;
+        }
+        return true;
+    }
+
+    /**
+     * 原版武器分类 (vanilla_weapons)：每个分类包含一个穿甲系数和一组物品
+     * 旧版 posture.yml 没有这一节时，按原来的规则 (名称含 _AXE / _SWORD) 生成
+     */
+    private double[] loadVanillaWeapons(ConfigurationSection section, List<String> problems) {
+        org.bukkit.Material[] materials = org.bukkit.Material.values();
+        double[] table = filled(new double[materials.length], 1.0);
+        if (section == null) {
+            for (org.bukkit.Material material : materials) {
+                String name = material.name();
+                if (name.contains("_AXE")) table[material.ordinal()] = 2.5;
+                else if (name.contains("_SWORD")) table[material.ordinal()] = 1.5;
+            }
+            return table;
+        }
+        for (String category : section.getKeys(false)) {
+            double apc = section.getDouble(category + ".apc", 1.0);
+            for (String materialName : section.getStringList(category + ".materials")) {
+                org.bukkit.Material material = org.bukkit.Material.matchMaterial(materialName);
+                if (material == null) {
+                    warn(problems, "Invalid material in posture.yml (vanilla_weapons." + category + "): " + materialName);
+                    continue;
+                }
+                table[material.ordinal()] = apc;
+            }
+        }
+        return table;
+    }
+
+    private static int entityMaskLength() {
+        return (org.bukkit.entity.EntityType.values().length + 63) >>> 6;
+    }
+
+    private static void setBit(long[] mask, org.bukkit.entity.EntityType type) {
+        mask[type.ordinal() >>> 6] |= 1L << type.ordinal();
+    }
+
+    private static double[] filled(double[] array, double value) {
+        java.util.Arrays.fill(array, value);
+        return array;
+    }
+
+    private static boolean[] filled(boolean[] array, boolean value) {
+        java.util.Arrays.fill(array, value);
+        return array;
     }
     
     public int getPostureBarLength() {
-        return postureBarLength;
+        return posture.barLength;
     }
     
     public boolean hasHeavyEffect(org.bukkit.entity.EntityType type) {
-        return entityHeavyEffectMap.getOrDefault(type, true); // Default true
+        return posture.entityHeavyEffect[type.ordinal()];
     }
 
     /**
-     * 自动加载配置文件中的所有武器数据
-     * 包括架势条配置、武器属性、连招步骤、亡灵特攻等
+     * 武器定义文件：weapons.yml 在前，然后是 weapons/ 目录下的 .yml 文件 (按文件名排序)
+     * 每个文件的格式与 weapons.yml 相同 (weapons: 段落)，可以一个文件一把武器，也可以一个文件一组武器
      */
-    public void loadWeapons() {
-        loadPostureConfig(); // 加载架势配置
-        
-        weapons.clear();
+    List<File> weaponSources() {
+        List<File> sources = new java.util.ArrayList<>();
         File file = new File(plugin.getDataFolder(), "weapons.yml");
         if (!file.exists()) {
             plugin.saveResource("weapons.yml", false);
         }
+        sources.add(file);
+        File[] shards = new File(plugin.getDataFolder(), "weapons").listFiles((dir, name) -> name.endsWith(".yml"));
+        if (shards != null) {
+            java.util.Arrays.sort(shards, java.util.Comparator.comparing(File::getName));
+            sources.addAll(java.util.Arrays.asList(shards));
+        }
+        return sources;
+    }
 
-        FileConfiguration config = YamlConfiguration.loadConfiguration(file);
-        
-        // 自动迁移旧配置 (10003 -> 11451)
-        if (config.contains("weapons.10003") && !config.contains("weapons.11451")) {
+    /**
+     * 文件相对于数据目录的名称 (例如 weapons/swords.yml)，用于警告信息和缓存键
+     */
+    String sourceName(File file) {
+        return plugin.getDataFolder().toPath().relativize(file.toPath()).toString().replace(File.separatorChar, '/');
+    }
+
+    /**
+     * 单个武器定义文件的解析结果
+     */
+    private static final class WeaponSource {
+        final String name;
+        byte[] digest; // 解析的内容的 SHA-256 (解析完成后不再修改，可以被之后的增量重载沿用)
+        final List<WeaponData> weapons = new java.util.ArrayList<>();
+        final List<String> problems = new java.util.ArrayList<>();
+
+        WeaponSource(String name) {
+            this.name = name;
+        }
+    }
+
+    /**
+     * 解析武器定义文件，内容与 previous 中同名文件相同的直接沿用
+     * 多个文件需要解析时在有界线程池中并行解析。特攻分组使用同一次解析得到的 posture 配置
+     */
+    private List<WeaponSource> parseWeaponSources(Map<String, long[]> entityGroups, Map<String, WeaponSource> previous) {
+        List<File> files = weaponSources();
+        WeaponSource[] sources = new WeaponSource[files.size()];
+        byte[][] contents = new byte[files.size()][];
+        List<Integer> changed = new java.util.ArrayList<>();
+        for (int i = 0; i < files.size(); i++) {
+            byte[] content = readSource(files.get(i));
+            WeaponSource cached = previous.get(sourceName(files.get(i)));
+            if (cached != null && java.util.Arrays.equals(cached.digest, RegistryCache.sha256(content))) {
+                sources[i] = cached;
+            } else {
+                contents[i] = content;
+                changed.add(i);
+            }
+        }
+
+        if (changed.size() == 1) {
+            int i = changed.get(0);
+            sources[i] = parseWeaponSource(files.get(i), contents[i], entityGroups);
+        } else if (changed.size() > 1) {
+            int threads = Math.min(changed.size(), Math.min(MAX_LOADER_THREADS, Runtime.getRuntime().availableProcessors()));
+            java.util.concurrent.ExecutorService executor = java.util.concurrent.Executors.newFixedThreadPool(threads, runnable -> {
+                Thread thread = new Thread(runnable, "HanaWeapons-WeaponLoader");
+                thread.setDaemon(true);
+                return thread;
+            });
+            try {
+                List<java.util.concurrent.Future<WeaponSource>> futures = new java.util.ArrayList<>(changed.size());
+                for (int i : changed) {
+                    File file = files.get(i);
+                    byte[] content = contents[i];
+                    futures.add(executor.submit(() -> parseWeaponSource(file, content, entityGroups)));
+                }
+                for (int n = 0; n < changed.size(); n++) {
+                    sources[changed.get(n)] = futures.get(n).get();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrupted while loading weapon files", e);
+            } catch (java.util.concurrent.ExecutionException e) {
+                if (e.getCause() instanceof RuntimeException cause) throw cause;
+                throw new IllegalStateException("Failed to load weapon files", e.getCause());
+            } finally {
+                executor.shutdownNow();
+            }
+        }
+        return java.util.Arrays.asList(sources);
+    }
+
+    /**
+     * 按文件顺序合并：先定义的 ID 优先，重复的 custom_model_data 和变体 ID 冲突记为警告并忽略后出现的定义
+     */
+    private WeaponRegistry merge(List<WeaponSource> sources, List<String> problems, Map<String, byte[]> digests) {
+        // 在新的构建器中合并，完成后一次性发布，读取方不会看到加载到一半的注册表
+        WeaponRegistry.Builder builder = new WeaponRegistry.Builder();
+        Map<Integer, String> owners = new java.util.HashMap<>();
+        for (WeaponSource source : sources) {
+            digests.put(source.name, source.digest);
+            for (String problem : source.problems) {
+                problems.add(source.name + ": " + problem);
+            }
+            for (WeaponData data : source.weapons) {
+                register(builder, data, source.name, owners, problems);
+            }
+        }
+        return builder.build();
+    }
+
+    /**
+     * 解析一个武器定义文件 (在加载线程中调用)
+     */
+    private WeaponSource parseWeaponSource(File file, byte[] content, Map<String, long[]> entityGroups) {
+        WeaponSource source = new WeaponSource(sourceName(file));
+        source.digest = RegistryCache.sha256(content);
+        FileConfiguration config = loadYaml(file, content);
+
+        // 自动迁移旧配置 (10003 -> 11451)，只有 weapons.yml 需要
+        if (source.name.equals("weapons.yml") && config.contains("weapons.10003") && !config.contains("weapons.11451")) {
             plugin.getLogger().info("Migrating legacy weapon ID 10003 to 11451...");
             ConfigurationSection oldSection = config.getConfigurationSection("weapons.10003");
             config.set("weapons.11451", oldSection);
@@ -113,216 +541,329 @@ public class WeaponManager {
             config.set("weapons.10003", null); // 删除旧的
             try {
                 config.save(file);
+                source.digest = RegistryCache.sha256(config.saveToString().getBytes(java.nio.charset.StandardCharsets.UTF_8));
             } catch (Exception e) {
-                plugin.getLogger().warning("Failed to save migrated config: " + e.getMessage());
+                warn(source.problems, "Failed to save migrated config: " + e.getMessage());
             }
         }
 
         ConfigurationSection section = config.getConfigurationSection("weapons");
-
         if (section == null) {
-            plugin.getLogger().warning("No weapons section found in weapons.yml");
-            return;
+            warn(source.problems, "No weapons section found");
+            return source;
         }
 
         for (String key : section.getKeys(false)) {
             ConfigurationSection weaponSection = section.getConfigurationSection(key);
             if (weaponSection == null) continue;
+            source.weapons.add(parseWeapon(key, weaponSection, entityGroups, source.problems));
+        }
+        return source;
+    }
 
-            int customModelData = weaponSection.getInt("custom_model_data");
-            String materialName = weaponSection.getString("material", "NETHERITE_SWORD");
-            org.bukkit.Material material = org.bukkit.Material.matchMaterial(materialName);
-            if (material == null) material = org.bukkit.Material.NETHERITE_SWORD;
-
-            // ================== 单手/双手基础属性 ==================
-            double oneHandSpeed = weaponSection.getDouble("one_handed.attack_speed");
-            double oneHandDamage = weaponSection.getDouble("one_handed.damage");
-            double oneHandMoveSpeed = weaponSection.getDouble("one_handed.movement_speed", 0.0); // 默认不改变
-
-            double twoHandSpeed = weaponSection.getDouble("two_handed.attack_speed");
-            double twoHandDamage = weaponSection.getDouble("two_handed.damage");
-            double twoHandMoveSpeed = weaponSection.getDouble("two_handed.movement_speed", 0.0); // 默认不改变
-
-            // ================== 格挡与架势属性 ==================
-            double reduction = weaponSection.getDouble("two_handed.block_reduction", 0.5);
-            
-            double armorPenetration = weaponSection.getDouble("armor_penetration", 1.0);
-            double defenseCoefficient = weaponSection.getDouble("defense_coefficient", 0.0);
-            double postureRegenRate = weaponSection.getDouble("posture_regen_rate", 2.5);
-            int postureBarLength = weaponSection.getInt("posture_bar_length", -1); // -1 表示使用全局配置
-            double attackRange = weaponSection.getDouble("attack_range", 3.0); // 默认 3.0 (原版距离)
-
-            // 默认名字使用 key，实际应该从 yml 读取 name 字段
-            String name = weaponSection.getString("display_name", key);
-            List<String> lore = weaponSection.getStringList("lore");
-            if (lore == null) lore = new java.util.ArrayList<>();
-            
-            // 自动追加系数显示
-            if (armorPenetration > 0) {
-                lore.add("§f穿甲系数: §c" + armorPenetration);
-            }
-            if (defenseCoefficient > 0) {
-                lore.add("§f防御系数: §a" + defenseCoefficient);
-            }
+    /**
+     * 解析单把武器
+     */
+    private WeaponData parseWeapon(String key, ConfigurationSection weaponSection, Map<String, long[]> entityGroups, List<String> problems) {
+        int customModelData = weaponSection.getInt("custom_model_data");
+        String materialName = weaponSection.getString("material", "NETHERITE_SWORD");
+        org.bukkit.Material material = org.bukkit.Material.matchMaterial(materialName);
+        if (material == null) material = org.bukkit.Material.NETHERITE_SWORD;
+
+        // ================== 单手/双手基础属性 ==================
+        double oneHandSpeed = weaponSection.getDouble("one_handed.attack_speed");
+        double oneHandDamage = weaponSection.getDouble("one_handed.damage");
+        double oneHandMoveSpeed = weaponSection.getDouble("one_handed.movement_speed", 0.0); // 默认不改变
+
+        double twoHandSpeed = weaponSection.getDouble("two_handed.attack_speed");
+        double twoHandDamage = weaponSection.getDouble("two_handed.damage");
+        double twoHandMoveSpeed = weaponSection.getDouble("two_handed.movement_speed", 0.0); // 默认不改变
+
+        // ================== 格挡与架势属性 ==================
+        double reduction = weaponSection.getDouble("two_handed.block_reduction", 0.5);
+        
+        double armorPenetration = weaponSection.getDouble("armor_penetration", 1.0);
+        double defenseCoefficient = weaponSection.getDouble("defense_coefficient", 0.0);
+        double postureRegenRate = weaponSection.getDouble("posture_regen_rate", 2.5);
+        int postureBarLength = weaponSection.getInt("posture_bar_length", -1); // -1 表示使用全局配置
+        double attackRange = weaponSection.getDouble("attack_range", 3.0); // 默认 3.0 (原版距离)
+
+        // 默认名字使用 key，实际应该从 yml 读取 name 字段
+        String name = weaponSection.getString("display_name", key);
+        List<String> lore = weaponSection.getStringList("lore");
+        if (lore == null) lore = new java.util.ArrayList<>();
+        
+        // 自动追加系数显示
+        if (armorPenetration > 0) {
+            lore.add("§f穿甲系数: §c" + armorPenetration);
+        }
+        if (defenseCoefficient > 0) {
+            lore.add("§f防御系数: §a" + defenseCoefficient);
+        }
+
+        // ================== 机制开关 (Mechanics) ==================
+        boolean mechanicTwoHanded = weaponSection.getBoolean("mechanics.two_handed", false);
+        // 兼容性自动推断
+        if (!weaponSection.contains("mechanics.two_handed") && weaponSection.contains("two_handed")) {
+            mechanicTwoHanded = true;
+        }
+
+        boolean mechanicBlocking = weaponSection.getBoolean("mechanics.blocking", false);
+        if (!weaponSection.contains("mechanics.blocking") && defenseCoefficient > 0) {
+            mechanicBlocking = true;
+        }
+
+        boolean mechanicParry = weaponSection.getBoolean("mechanics.parry", false);
+        int parryWindow = weaponSection.getInt("parry_window", 200); // ms
+        int parryCooldown = weaponSection.getInt("parry_cooldown", 1000); // ms
+
+        // ================== 特效与音效 (Effects) ==================
+        List<String> blockSounds = weaponSection.getStringList("effects.block_sounds");
+        if (blockSounds == null || blockSounds.isEmpty()) {
+            String singleSound = weaponSection.getString("effects.block_sound");
+            if (singleSound != null) blockSounds = Collections.singletonList(singleSound);
+            else blockSounds = Collections.singletonList("ITEM_SHIELD_BLOCK");
+        }
+        List<org.bukkit.Sound> parsedBlockSounds = new java.util.ArrayList<>();
+        for (String s : blockSounds) parsedBlockSounds.add(parseSound(s, org.bukkit.Sound.ITEM_SHIELD_BLOCK));
+
+        double blockPitchMin = weaponSection.getDouble("effects.block_pitch_min", 0.8);
+        double blockPitchMax = weaponSection.getDouble("effects.block_pitch_max", 1.2);
+        
+        List<String> parrySounds = weaponSection.getStringList("effects.parry_sounds");
+        if (parrySounds == null || parrySounds.isEmpty()) {
+            String singleSound = weaponSection.getString("effects.parry_sound");
+            if (singleSound != null) parrySounds = Collections.singletonList(singleSound);
+            else parrySounds = Collections.singletonList("BLOCK_ANVIL_LAND");
+        }
+        List<org.bukkit.Sound> parsedParrySounds = new java.util.ArrayList<>();
+        for (String s : parrySounds) parsedParrySounds.add(parseSound(s, org.bukkit.Sound.BLOCK_ANVIL_LAND));
+
+        double parryPitchMin = weaponSection.getDouble("effects.parry_pitch_min", 1.5);
+        double parryPitchMax = weaponSection.getDouble("effects.parry_pitch_max", 2.0);
+        
+        String blockParticleStr = weaponSection.getString("effects.block_particle", "LAVA");
+        org.bukkit.Particle blockParticle = parseParticle(blockParticleStr, null); // Allow null for no particle
+        int blockParticleCount = weaponSection.getInt("effects.block_particle_count", 10);
+        double blockParticleSpread = weaponSection.getDouble("effects.block_particle_spread", 0.5);
+        
+        String parryParticleStr = weaponSection.getString("effects.parry_particle", "LAVA");
+        org.bukkit.Particle parryParticle = parseParticle(parryParticleStr, org.bukkit.Particle.LAVA);
+        int parryParticleCount = weaponSection.getInt("effects.parry_particle_count", 10);
+        double parryParticleSpread = weaponSection.getDouble("effects.parry_particle_spread", 0.5);
 
-            // ================== 机制开关 (Mechanics) ==================
-            boolean mechanicTwoHanded = weaponSection.getBoolean("mechanics.two_handed", false);
-            // 兼容性自动推断
-            if (!weaponSection.contains("mechanics.two_handed") && weaponSection.contains("two_handed")) {
-                mechanicTwoHanded = true;
+        // ================== 弹反负面效果 (Debuffs) ==================
+        List<ConfiguredPotionEffect> parryDebuffs = new java.util.ArrayList<>();
+        if (weaponSection.contains("parry_debuffs")) {
+            ConfigurationSection debuffSection = weaponSection.getConfigurationSection("parry_debuffs");
+            if (debuffSection != null) {
+                // Map format: WEAKNESS: {duration: 60, amplifier: 0}
+                for (String debuffKey : debuffSection.getKeys(false)) {
+                    org.bukkit.potion.PotionEffectType type = parseEffectType(debuffKey);
+                    if (type != null) {
+                        int duration = debuffSection.getInt(debuffKey + ".duration", 60);
+                        int amplifier = debuffSection.getInt(debuffKey + ".amplifier", 0);
+                        parryDebuffs.add(new ConfiguredPotionEffect(type, duration, amplifier));
+                    }
+                }
+            } else {
+                // List format (List<Map<String, Object>>)
+                List<Map<?, ?>> debuffList = weaponSection.getMapList("parry_debuffs");
+                for (Map<?, ?> map : debuffList) {
+                     Object typeNameObj = map.get("type");
+                     if (!(typeNameObj instanceof String)) continue;
+                     
+                     String typeName = (String) typeNameObj;
+                     org.bukkit.potion.PotionEffectType type = parseEffectType(typeName);
+                     if (type != null) {
+                         int duration = (map.get("duration") instanceof Number) ? ((Number) map.get("duration")).intValue() : 60;
+                         int amplifier = (map.get("amplifier") instanceof Number) ? ((Number) map.get("amplifier")).intValue() : 0;
+                         parryDebuffs.add(new ConfiguredPotionEffect(type, duration, amplifier));
+                     }
+                }
             }
+        }
+        
+        // ================== 连招系统 (Combo) ==================
+        boolean comboEnabled = weaponSection.getBoolean("combo.enabled", false);
+        int comboResetTime = weaponSection.getInt("combo.reset_time", 1500);
+        List<ComboStep> comboSteps = new java.util.ArrayList<>();
+        
+        if (comboEnabled) {
+             List<Map<?, ?>> stepsList = weaponSection.getMapList("combo.steps");
+             plugin.getLogger().log(Level.FINE, "Loading combo steps for weapon " + name + ": found " + stepsList.size() + " steps.");
+             for (Map<?, ?> map : stepsList) {
+                 double dmgMult = (map.get("damage_mult") instanceof Number) ? ((Number) map.get("damage_mult")).doubleValue() : 1.0;
+                 int poseAdd = (map.get("pose_model_add") instanceof Number) ? ((Number) map.get("pose_model_add")).intValue() : 0;
+                 String actionBar = (map.get("action_bar") instanceof String) ? (String) map.get("action_bar") : null;
+                 int nextStep = (map.get("next_step") instanceof Number) ? ((Number) map.get("next_step")).intValue() : -1;
+                 int stepResetTime = (map.get("reset_time") instanceof Number) ? ((Number) map.get("reset_time")).intValue() : -1;
+                 int[] branches = parseComboBranches(key, comboSteps.size(), map.get("branches"), stepsList.size(), problems);
+                 comboSteps.add(new ComboStep(dmgMult, poseAdd, actionBar, nextStep, stepResetTime, branches));
+                 plugin.getLogger().log(Level.FINE, " - Step loaded: poseAdd=" + poseAdd + ", nextStep=" + nextStep);
+             }
+        }
 
-            boolean mechanicBlocking = weaponSection.getBoolean("mechanics.blocking", false);
-            if (!weaponSection.contains("mechanics.blocking") && defenseCoefficient > 0) {
-                mechanicBlocking = true;
+        // ================== 亡灵/特攻系统 (Slayer) ==================
+        double slayerMultiplier = 1.0;
+        java.util.Set<org.bukkit.entity.EntityType> slayerTypes = new java.util.HashSet<>();
+        java.util.Set<String> slayerGroups = new java.util.HashSet<>();
+        if (weaponSection.isConfigurationSection("slayer")) {
+            ConfigurationSection slayerSection = weaponSection.getConfigurationSection("slayer");
+            slayerMultiplier = slayerSection.getDouble("multiplier", 1.0);
+            java.util.List<String> typeList = slayerSection.getStringList("types");
+            for (String t : typeList) {
+                if (t == null) continue;
+                try {
+                    org.bukkit.entity.EntityType et = org.bukkit.entity.EntityType.valueOf(t.toUpperCase());
+                    slayerTypes.add(et);
+                } catch (IllegalArgumentException ignored) {}
             }
+            java.util.List<String> groupList = slayerSection.getStringList("groups");
+            for (String g : groupList) {
+                if (g != null) slayerGroups.add(g.toUpperCase());
+            }
+        }
+        // 特攻类型和分组合并成一个位图，命中判定只需一次位运算
+        long[] slayerMask = new long[entityMaskLength()];
+        for (org.bukkit.entity.EntityType et : slayerTypes) {
+            setBit(slayerMask, et);
+        }
+        for (String g : slayerGroups) {
+            long[] groupMask = entityGroups.get(g);
+            if (groupMask == null) {
+                warn(problems, "Unknown slayer group '" + g + "' in weapon " + key + " (define it in posture.yml entity_groups)");
+                continue;
+            }
+            for (int i = 0; i < slayerMask.length; i++) {
+                slayerMask[i] |= groupMask[i];
+            }
+        }
+        
+        String skill = weaponSection.getString("skill");
+        if (skill == null) skill = weaponSection.getString("mechanics.skill");
+        int skillId = plugin.getSkillRegistry().idOf(skill);
+        if (skill != null && skillId == SkillRegistry.NONE) {
+            warn(problems, "Unknown skill '" + skill + "' in weapon " + key + ", available: " + plugin.getSkillRegistry().names());
+        }
+        
+        int skillPoseModel = 0;
+        if (weaponSection.contains("skill_pose_model")) {
+            if (weaponSection.isInt("skill_pose_model")) {
+                skillPoseModel = weaponSection.getInt("skill_pose_model");
+            } else {
+                warn(problems, "Weapon " + customModelData + " has an invalid 'skill_pose_model' value. It must be an integer (CustomModelData ID), but found: " + weaponSection.get("skill_pose_model"));
+            }
+        }
 
-            boolean mechanicParry = weaponSection.getBoolean("mechanics.parry", false);
-            int parryWindow = weaponSection.getInt("parry_window", 200); // ms
-            int parryCooldown = weaponSection.getInt("parry_cooldown", 1000); // ms
+        return new WeaponData(customModelData, name, material, lore, oneHandSpeed, oneHandDamage, oneHandMoveSpeed, twoHandSpeed, twoHandDamage, twoHandMoveSpeed, reduction, armorPenetration, defenseCoefficient, postureRegenRate, postureBarLength, attackRange, mechanicTwoHanded, mechanicBlocking, mechanicParry, parryWindow, parryCooldown, parsedBlockSounds, blockPitchMin, blockPitchMax, parsedParrySounds, parryPitchMin, parryPitchMax, blockParticle, blockParticleCount, blockParticleSpread, parryParticle, parryParticleCount, parryParticleSpread, parryDebuffs, comboEnabled, comboResetTime, comboSteps, slayerMultiplier, slayerTypes, slayerGroups, slayerMask, skill, skillId, skillPoseModel);
+    }
 
-            // ================== 特效与音效 (Effects) ==================
-            List<String> blockSounds = weaponSection.getStringList("effects.block_sounds");
-            if (blockSounds == null || blockSounds.isEmpty()) {
-                String singleSound = weaponSection.getString("effects.block_sound");
-                if (singleSound != null) blockSounds = Collections.singletonList(singleSound);
-                else blockSounds = Collections.singletonList("ITEM_SHIELD_BLOCK");
+    /**
+     * 解析连招步骤的 branches (heavy / sneak / sprint → 改为执行的步骤下标)
+     */
+    private static int[] parseComboBranches(String key, int step, Object value, int stepCount, List<String> problems) {
+        int[] branches = new int[ComboTable.INPUTS];
+        java.util.Arrays.fill(branches, -1);
+        if (!(value instanceof Map<?, ?> map)) return branches;
+        for (Map.Entry<?, ?> entry : map.entrySet()) {
+            ComboTable.Input input;
+            try {
+                input = ComboTable.Input.valueOf(String.valueOf(entry.getKey()).toUpperCase(java.util.Locale.ROOT));
+            } catch (IllegalArgumentException e) {
+                warn(problems, "Unknown combo input '" + entry.getKey() + "' in step " + step + " of weapon " + key + " (use heavy, sneak or sprint)");
+                continue;
             }
-            List<org.bukkit.Sound> parsedBlockSounds = new java.util.ArrayList<>();
-            for (String s : blockSounds) parsedBlockSounds.add(parseSound(s, org.bukkit.Sound.ITEM_SHIELD_BLOCK));
-
-            double blockPitchMin = weaponSection.getDouble("effects.block_pitch_min", 0.8);
-            double blockPitchMax = weaponSection.getDouble("effects.block_pitch_max", 1.2);
-            
-            List<String> parrySounds = weaponSection.getStringList("effects.parry_sounds");
-            if (parrySounds == null || parrySounds.isEmpty()) {
-                String singleSound = weaponSection.getString("effects.parry_sound");
-                if (singleSound != null) parrySounds = Collections.singletonList(singleSound);
-                else parrySounds = Collections.singletonList("BLOCK_ANVIL_LAND");
+            if (input == ComboTable.Input.LIGHT) {
+                warn(problems, "Combo step " + step + " of weapon " + key + " cannot branch on light attacks, use next_step instead");
+                continue;
             }
-            List<org.bukkit.Sound> parsedParrySounds = new java.util.ArrayList<>();
-            for (String s : parrySounds) parsedParrySounds.add(parseSound(s, org.bukkit.Sound.BLOCK_ANVIL_LAND));
-
-            double parryPitchMin = weaponSection.getDouble("effects.parry_pitch_min", 1.5);
-            double parryPitchMax = weaponSection.getDouble("effects.parry_pitch_max", 2.0);
-            
-            String blockParticleStr = weaponSection.getString("effects.block_particle", "LAVA");
-            org.bukkit.Particle blockParticle = parseParticle(blockParticleStr, null); // Allow null for no particle
-            int blockParticleCount = weaponSection.getInt("effects.block_particle_count", 10);
-            double blockParticleSpread = weaponSection.getDouble("effects.block_particle_spread", 0.5);
-            
-            String parryParticleStr = weaponSection.getString("effects.parry_particle", "LAVA");
-            org.bukkit.Particle parryParticle = parseParticle(parryParticleStr, org.bukkit.Particle.LAVA);
-            int parryParticleCount = weaponSection.getInt("effects.parry_particle_count", 10);
-            double parryParticleSpread = weaponSection.getDouble("effects.parry_particle_spread", 0.5);
-
-            // ================== 弹反负面效果 (Debuffs) ==================
-            List<ConfiguredPotionEffect> parryDebuffs = new java.util.ArrayList<>();
-            if (weaponSection.contains("parry_debuffs")) {
-                ConfigurationSection debuffSection = weaponSection.getConfigurationSection("parry_debuffs");
-                if (debuffSection != null) {
-                    // Map format: WEAKNESS: {duration: 60, amplifier: 0}
-                    for (String debuffKey : debuffSection.getKeys(false)) {
-                        org.bukkit.potion.PotionEffectType type = parseEffectType(debuffKey);
-                        if (type != null) {
-                            int duration = debuffSection.getInt(debuffKey + ".duration", 60);
-                            int amplifier = debuffSection.getInt(debuffKey + ".amplifier", 0);
-                            parryDebuffs.add(new ConfiguredPotionEffect(type, duration, amplifier));
-                        }
-                    }
-                } else {
-                    // List format (List<Map<String, Object>>)
-                    List<Map<?, ?>> debuffList = weaponSection.getMapList("parry_debuffs");
-                    for (Map<?, ?> map : debuffList) {
-                         Object typeNameObj = map.get("type");
-                         if (!(typeNameObj instanceof String)) continue;
-                         
-                         String typeName = (String) typeNameObj;
-                         org.bukkit.potion.PotionEffectType type = parseEffectType(typeName);
-                         if (type != null) {
-                             int duration = (map.get("duration") instanceof Number) ? ((Number) map.get("duration")).intValue() : 60;
-                             int amplifier = (map.get("amplifier") instanceof Number) ? ((Number) map.get("amplifier")).intValue() : 0;
-                             parryDebuffs.add(new ConfiguredPotionEffect(type, duration, amplifier));
-                         }
-                    }
-                }
-            }
-            
-            // ================== 连招系统 (Combo) ==================
-            boolean comboEnabled = weaponSection.getBoolean("combo.enabled", false);
-            int comboResetTime = weaponSection.getInt("combo.reset_time", 1500);
-            List<ComboStep> comboSteps = new java.util.ArrayList<>();
-            
-            if (comboEnabled) {
-                 List<Map<?, ?>> stepsList = weaponSection.getMapList("combo.steps");
-                 plugin.getLogger().info("Loading combo steps for weapon " + name + ": found " + stepsList.size() + " steps.");
-                 for (Map<?, ?> map : stepsList) {
-                     double dmgMult = (map.get("damage_mult") instanceof Number) ? ((Number) map.get("damage_mult")).doubleValue() : 1.0;
-                     int poseAdd = (map.get("pose_model_add") instanceof Number) ? ((Number) map.get("pose_model_add")).intValue() : 0;
-                     String actionBar = (map.get("action_bar") instanceof String) ? (String) map.get("action_bar") : null;
-                     int nextStep = (map.get("next_step") instanceof Number) ? ((Number) map.get("next_step")).intValue() : -1;
-                     comboSteps.add(new ComboStep(dmgMult, poseAdd, actionBar, nextStep));
-                     plugin.getLogger().info(" - Step loaded: poseAdd=" + poseAdd + ", nextStep=" + nextStep);
-                 }
+            if (!(entry.getValue() instanceof Number target) || target.intValue() < 0 || target.intValue() >= stepCount) {
+                warn(problems, "Invalid combo branch '" + entry.getKey() + ": " + entry.getValue() + "' in step " + step + " of weapon " + key + " (must be a step index 0-" + (stepCount - 1) + ")");
+                continue;
             }
+            branches[input.ordinal()] = target.intValue();
+        }
+        return branches;
+    }
 
-            // ================== 亡灵/特攻系统 (Slayer) ==================
-            double slayerMultiplier = 1.0;
-            java.util.Set<org.bukkit.entity.EntityType> slayerTypes = new java.util.HashSet<>();
-            java.util.Set<String> slayerGroups = new java.util.HashSet<>();
-            if (weaponSection.isConfigurationSection("slayer")) {
-                ConfigurationSection slayerSection = weaponSection.getConfigurationSection("slayer");
-                slayerMultiplier = slayerSection.getDouble("multiplier", 1.0);
-                java.util.List<String> typeList = slayerSection.getStringList("types");
-                for (String t : typeList) {
-                    if (t == null) continue;
-                    try {
-                        org.bukkit.entity.EntityType et = org.bukkit.entity.EntityType.valueOf(t.toUpperCase());
-                        slayerTypes.add(et);
-                    } catch (IllegalArgumentException ignored) {}
-                }
-                java.util.List<String> groupList = slayerSection.getStringList("groups");
-                for (String g : groupList) {
-                    if (g != null) slayerGroups.add(g.toUpperCase());
-                }
+    /**
+     * 由基础武器列表 (按配置文件顺序) 生成注册表，变体 ID 按相同规则重新注册
+     */
+    WeaponRegistry buildRegistry(List<WeaponData> weapons) {
+        WeaponRegistry.Builder builder = new WeaponRegistry.Builder();
+        for (WeaponData data : weapons) {
+            register(builder, data, null, null, null);
+        }
+        return builder.build();
+    }
+
+    /**
+     * 注册一把武器及其变体 ID，已被占用的 ID 保留先注册的武器
+     * @param owners ID -> 占用者描述，为 null 时不报告冲突
+     */
+    private void register(WeaponRegistry.Builder builder, WeaponData data, String source, Map<Integer, String> owners, List<String> problems) {
+        if (builder.contains(data.id)) {
+            if (owners != null) {
+                warn(problems, source + ": duplicate custom_model_data " + data.id + " (" + data.name + "), already used by "
+                        + owners.get(data.id) + "; ignoring this definition");
             }
-            
-            String skill = weaponSection.getString("skill");
-            if (skill == null) skill = weaponSection.getString("mechanics.skill");
-            
-            int skillPoseModel = 0;
-            if (weaponSection.contains("skill_pose_model")) {
-                if (weaponSection.isInt("skill_pose_model")) {
-                    skillPoseModel = weaponSection.getInt("skill_pose_model");
-                } else {
-                    plugin.getLogger().warning("Weapon " + customModelData + " has an invalid 'skill_pose_model' value. It must be an integer (CustomModelData ID), but found: " + weaponSection.get("skill_pose_model"));
+            return;
+        }
+        builder.addWeapon(data);
+        if (owners != null) owners.put(data.id, describe(source, data));
+
+        for (int variantId : variantIds(data)) {
+            WeaponData existing = builder.get(variantId);
+            if (existing == data) continue; // 同一把武器的多个步骤使用同一姿态
+            if (existing != null) {
+                if (owners != null) {
+                    warn(problems, source + ": variant ID " + variantId + " of weapon " + data.id + " (" + data.name + ") collides with "
+                            + owners.get(variantId) + "; ignoring this variant");
                 }
+                continue;
             }
+            builder.addVariant(variantId, data);
+            if (owners != null) owners.put(variantId, describe(source, data));
+            plugin.getLogger().log(Level.FINE, "Registered variant ID: " + variantId + " for weapon " + data.name);
+        }
+    }
 
-            WeaponData data = new WeaponData(customModelData, name, material, lore, oneHandSpeed, oneHandDamage, oneHandMoveSpeed, twoHandSpeed, twoHandDamage, twoHandMoveSpeed, reduction, armorPenetration, defenseCoefficient, postureRegenRate, postureBarLength, attackRange, mechanicTwoHanded, mechanicBlocking, mechanicParry, parryWindow, parryCooldown, parsedBlockSounds, blockPitchMin, blockPitchMax, parsedParrySounds, parryPitchMin, parryPitchMax, blockParticle, blockParticleCount, blockParticleSpread, parryParticle, parryParticleCount, parryParticleSpread, parryDebuffs, comboEnabled, comboResetTime, comboSteps, slayerMultiplier, slayerTypes, slayerGroups, skill, skillPoseModel);
-            weapons.put(customModelData, data);
-            
-            // 自动注册变体 ID (例如 1145701, 1145702, 1145703, 1145704)
-            // 假设变体 ID = baseID * 100 + modelAdd
-            // 我们遍历 steps 自动注册
-            if (comboEnabled && !comboSteps.isEmpty()) {
-                for (ComboStep step : comboSteps) {
-                    if (step.poseModelAdd > 0) {
-                        int variantId = customModelData * 100 + step.poseModelAdd;
-                        // 将变体 ID 也指向同一个 data 对象
-                        weapons.put(variantId, data);
-                        plugin.getLogger().info("Registered variant ID: " + variantId + " for weapon " + name);
-                    }
+    private static String describe(String source, WeaponData data) {
+        return "weapon " + data.id + " (" + data.name + ") in " + source;
+    }
+
+    /**
+     * 武器的变体 ID (连招姿势模型、技能姿势模型)，全部指向同一个 data 对象
+     */
+    private static List<Integer> variantIds(WeaponData data) {
+        List<Integer> ids = new java.util.ArrayList<>();
+        // 自动注册变体 ID (例如 1145701, 1145702, 1145703, 1145704)
+        // 假设变体 ID = baseID * 100 + modelAdd
+        // 我们遍历 steps 自动注册
+        if (data.comboEnabled && !data.comboSteps.isEmpty()) {
+            for (ComboStep step : data.comboSteps) {
+                if (step.poseModelAdd > 0) {
+                    ids.add(data.id * 100 + step.poseModelAdd);
                 }
             }
+        }
 
-            // Register skill pose model as a variant
-            if (skillPoseModel > 0) {
-                weapons.put(skillPoseModel, data);
-                plugin.getLogger().info("Registered skill pose ID: " + skillPoseModel + " for weapon " + name);
-            }
+        // Register skill pose model as a variant
+        if (data.skillPoseModel > 0) {
+            ids.add(data.skillPoseModel);
         }
-        plugin.getLogger().info("Loaded " + weapons.size() + " weapons (including variants).");
+        return ids;
+    }
+
+    /**
+     * 编译物品模板并发布新的注册表
+     * 模板先于注册表发布：新注册表中的 WeaponData 一定能找到模板，旧数据则走慢路径
+     * 沿用的 WeaponData (增量重载中未变化的武器) 直接复用已编译的模板
+     */
+    private void publish(WeaponRegistry newRegistry) {
+        itemTemplates = WeaponItemTemplates.compile(newRegistry, weaponIdKey, placeholderKey, itemTemplates);
+        registry = newRegistry;
     }
 
     private org.bukkit.Sound parseSound(String name, org.bukkit.Sound def) {
@@ -350,39 +891,81 @@ public class WeaponManager {
             this.duration = duration;
             this.amplifier = amplifier;
         }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof ConfiguredPotionEffect other && type == other.type && duration == other.duration && amplifier == other.amplifier;
+        }
+
+        @Override
+        public int hashCode() {
+            return java.util.Objects.hash(type, duration, amplifier);
+        }
     }
     
     public WeaponData getWeaponData(int customModelData) {
-        return weapons.get(customModelData);
+        return registry.get(customModelData);
+    }
+
+    /**
+     * 获取当前的预编译物品模板
+     */
+    public WeaponItemTemplates getItemTemplates() {
+        return itemTemplates;
+    }
+
+    /**
+     * 获取当前生效的注册表快照
+     */
+    public WeaponRegistry getRegistry() {
+        return registry;
     }
 
     public WeaponData getWeaponData(org.bukkit.inventory.ItemStack item) {
         if (item == null || !item.hasItemMeta()) return null;
-        org.bukkit.inventory.meta.ItemMeta meta = item.getItemMeta();
-        
-        // 优先检查 PDC 中的 NBT ID
-        if (meta.getPersistentDataContainer().has(new org.bukkit.NamespacedKey(plugin, "hana_weapon_id"), org.bukkit.persistence.PersistentDataType.INTEGER)) {
-            int id = meta.getPersistentDataContainer().get(new org.bukkit.NamespacedKey(plugin, "hana_weapon_id"), org.bukkit.persistence.PersistentDataType.INTEGER);
+
+        // 优先检查 PDC 中的 NBT ID (直接读 ItemStack 的只读视图，不克隆 ItemMeta)
+        Integer id = item.getPersistentDataContainer().get(weaponIdKey, org.bukkit.persistence.PersistentDataType.INTEGER);
+        if (id != null) {
             return getWeaponData(id);
         }
-        
-        // 回退到 CustomModelData
+
+        // 回退到 CustomModelData (只有武器使用的物品类型才需要克隆 ItemMeta，附魔/命名的原版装备直接跳过)
+        if (!registry.usesMaterial(item.getType())) return null;
+        org.bukkit.inventory.meta.ItemMeta meta = item.getItemMeta();
         if (!meta.hasCustomModelData()) return null;
         return getWeaponData(meta.getCustomModelData());
     }
     
     public double getArmorPenetration(org.bukkit.inventory.ItemStack item) {
         if (item == null) return 1.0;
-        org.bukkit.inventory.meta.ItemMeta meta = item.getItemMeta();
-        if (meta != null && meta.hasCustomModelData()) {
-            WeaponData data = getWeaponData(meta.getCustomModelData());
+        if (item.hasItemMeta()) { // 原版物品没有 meta，直接查表
+            // 与 getWeaponData 相同：先读 PDC 的只读视图，只有 CustomModelData 回退才克隆 ItemMeta
+            WeaponData data = getWeaponData(item);
             if (data != null) return data.armorPenetration;
         }
-        // Vanilla defaults
-        String name = item.getType().name();
-        if (name.contains("_AXE")) return 2.5;
-        if (name.contains("_SWORD")) return 1.5;
-        return 1.0;
+        return getVanillaArmorPenetration(item.getType());
+    }
+
+    /**
+     * 玩家攻击者的穿甲系数，主手武器数据由 PlayerHandCache 提供，无需再读取物品
+     */
+    public double getPlayerArmorPenetration(org.bukkit.entity.Player player, WeaponData mainData) {
+        if (mainData != null) return mainData.armorPenetration;
+        org.bukkit.Material type = player.getInventory().getItemInMainHand().getType();
+        if (type != org.bukkit.Material.AIR) return getVanillaArmorPenetration(type);
+        return posture.entityApc[org.bukkit.entity.EntityType.PLAYER.ordinal()];
+    }
+
+    /**
+     * 原版物品的穿甲系数 (见 posture.yml 的 vanilla_weapons)
+     */
+    private double getVanillaArmorPenetration(org.bukkit.Material type) {
+        return posture.vanillaWeaponApc[type.ordinal()];
+    }
+
+    public double getDefenseCoefficient(WeaponData data) {
+        return data != null ? data.defenseCoefficient : 0.0;
     }
 
     public double getDefenseCoefficient(org.bukkit.inventory.ItemStack item) {
@@ -395,6 +978,10 @@ public class WeaponManager {
         return 0.0;
     }
     
+    public double getPostureRegenRate(WeaponData data) {
+        return data != null ? data.postureRegenRate : 2.5;
+    }
+
     public double getPostureRegenRate(org.bukkit.inventory.ItemStack item) {
         if (item == null) return 2.5;
         org.bukkit.inventory.meta.ItemMeta meta = item.getItemMeta();
@@ -405,6 +992,10 @@ public class WeaponManager {
         return 2.5;
     }
     
+    public int getPostureBarLength(WeaponData data) {
+        return (data != null && data.postureBarLength > 0) ? data.postureBarLength : 0;
+    }
+
     public int getPostureBarLength(org.bukkit.inventory.ItemStack item) {
         if (item == null) return 0;
         org.bukkit.inventory.meta.ItemMeta meta = item.getItemMeta();
@@ -426,12 +1017,12 @@ public class WeaponManager {
              return getArmorPenetration(item); 
         }
         
-        // 2. Check Entity Type (From Map)
-        return entityApcMap.getOrDefault(attacker.getType(), 1.0);
+        // 2. Check Entity Type (From Table)
+        return posture.entityApc[attacker.getType().ordinal()];
     }
     
     public double getProjectileArmorPenetration(org.bukkit.entity.EntityType type) {
-        return entityApcMap.getOrDefault(type, 1.0);
+        return posture.entityApc[type.ordinal()];
     }
 
     public static class ComboStep {
@@ -439,12 +1030,29 @@ public class WeaponManager {
         public final int poseModelAdd;
         public final String actionBar;
         public final int nextStep; // -1 for default (+1)
+        public final int resetTime; // 执行该步骤后的重置时间 (毫秒)，-1 表示使用 combo.reset_time
+        // 按 ComboTable.Input 索引：在该阶段使用此输入时改为执行的步骤，-1 表示没有分支 (LIGHT 固定为 -1)
+        public final int[] branches;
         
-        public ComboStep(double damageMult, int poseModelAdd, String actionBar, int nextStep) {
+        public ComboStep(double damageMult, int poseModelAdd, String actionBar, int nextStep, int resetTime, int[] branches) {
             this.damageMult = damageMult;
             this.poseModelAdd = poseModelAdd;
             this.actionBar = actionBar;
             this.nextStep = nextStep;
+            this.resetTime = resetTime;
+            this.branches = branches;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof ComboStep other && Double.compare(damageMult, other.damageMult) == 0 && poseModelAdd == other.poseModelAdd
+                    && java.util.Objects.equals(actionBar, other.actionBar) && nextStep == other.nextStep
+                    && resetTime == other.resetTime && java.util.Arrays.equals(branches, other.branches);
+        }
+
+        @Override
+        public int hashCode() {
+            return java.util.Objects.hash(damageMult, poseModelAdd, actionBar, nextStep, resetTime, java.util.Arrays.hashCode(branches));
         }
     }
 
@@ -489,13 +1097,19 @@ public class WeaponManager {
         public final boolean comboEnabled;
         public final int comboResetTime;
         public final List<ComboStep> comboSteps;
+        // comboSteps 编译后的转移表 (未启用连招或没有步骤时为 null)，由 comboSteps 决定，不单独比较
+        final ComboTable combo;
         public final double slayerMultiplier;
         public final java.util.Set<org.bukkit.entity.EntityType> slayerTypes;
         public final java.util.Set<String> slayerGroups;
+        // slayerTypes 与 slayerGroups 合并后的 EntityType.ordinal() 位图
+        public final long[] slayerMask;
         public final String skill;
+        // skill 对应的技能 ID (SkillRegistry)，没有技能或未知技能时为 SkillRegistry.NONE
+        public final int skillId;
         public final int skillPoseModel;
 
-        public WeaponData(int id, String name, org.bukkit.Material material, List<String> lore, double oneHandSpeed, double oneHandDamage, double oneHandMoveSpeed, double twoHandSpeed, double twoHandDamage, double twoHandMoveSpeed, double reduction, double armorPenetration, double defenseCoefficient, double postureRegenRate, int postureBarLength, double attackRange, boolean mechanicTwoHanded, boolean mechanicBlocking, boolean mechanicParry, int parryWindow, int parryCooldown, List<org.bukkit.Sound> blockSounds, double blockPitchMin, double blockPitchMax, List<org.bukkit.Sound> parrySounds, double parryPitchMin, double parryPitchMax, org.bukkit.Particle blockParticle, int blockParticleCount, double blockParticleSpread, org.bukkit.Particle parryParticle, int parryParticleCount, double parryParticleSpread, List<ConfiguredPotionEffect> parryDebuffs, boolean comboEnabled, int comboResetTime, List<ComboStep> comboSteps, double slayerMultiplier, java.util.Set<org.bukkit.entity.EntityType> slayerTypes, java.util.Set<String> slayerGroups, String skill, int skillPoseModel) {
+        public WeaponData(int id, String name, org.bukkit.Material material, List<String> lore, double oneHandSpeed, double oneHandDamage, double oneHandMoveSpeed, double twoHandSpeed, double twoHandDamage, double twoHandMoveSpeed, double reduction, double armorPenetration, double defenseCoefficient, double postureRegenRate, int postureBarLength, double attackRange, boolean mechanicTwoHanded, boolean mechanicBlocking, boolean mechanicParry, int parryWindow, int parryCooldown, List<org.bukkit.Sound> blockSounds, double blockPitchMin, double blockPitchMax, List<org.bukkit.Sound> parrySounds, double parryPitchMin, double parryPitchMax, org.bukkit.Particle blockParticle, int blockParticleCount, double blockParticleSpread, org.bukkit.Particle parryParticle, int parryParticleCount, double parryParticleSpread, List<ConfiguredPotionEffect> parryDebuffs, boolean comboEnabled, int comboResetTime, List<ComboStep> comboSteps, double slayerMultiplier, java.util.Set<org.bukkit.entity.EntityType> slayerTypes, java.util.Set<String> slayerGroups, long[] slayerMask, String skill, int skillId, int skillPoseModel) {
             this.id = id;
             this.name = name;
             this.material = material;
@@ -533,10 +1147,13 @@ public class WeaponManager {
             this.comboEnabled = comboEnabled;
             this.comboResetTime = comboResetTime;
             this.comboSteps = comboSteps;
+            this.combo = comboEnabled ? ComboTable.compile(comboSteps, comboResetTime) : null;
             this.slayerMultiplier = slayerMultiplier;
             this.slayerTypes = slayerTypes;
             this.slayerGroups = slayerGroups;
+            this.slayerMask = slayerMask;
             this.skill = skill;
+            this.skillId = skillId;
             this.skillPoseModel = skillPoseModel;
         }
     }
@@ -549,16 +1166,8 @@ public class WeaponManager {
      */
     public boolean matchesSlayerTarget(WeaponData data, org.bukkit.entity.EntityType type) {
         if (data == null || type == null) return false;
-        // 1. 精确匹配实体类型
-        if (data.slayerTypes != null && data.slayerTypes.contains(type)) return true;
-        // 2. 匹配实体分组（如 UNDEAD）
-        if (data.slayerGroups != null) {
-            for (String g : data.slayerGroups) {
-                if ("UNDEAD".equalsIgnoreCase(g)) {
-                    if (GROUP_UNDEAD.contains(type)) return true;
-                }
-            }
-        }
-        return false;
+        // 实体类型和分组 (如 UNDEAD) 已在加载时合并进位图
+        int ordinal = type.ordinal();
+        return (data.slayerMask[ordinal >>> 6] & (1L << ordinal)) != 0;
     }
 }
@@ -0,0 +1,130 @@
+package xyz.hanamae.hanaWeapons;
+
+import xyz.hanamae.hanaWeapons.WeaponManager.WeaponData;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 武器注册表快照 (不可变)
+ * 以 CustomModelData (包括连招变体 ID 和技能姿态 ID) 为键，使用开放寻址的 int → WeaponData 表。
+ * 查询不装箱、不分配对象；重载时构建新的快照，由 WeaponManager 通过一个 volatile 引用整体替换。
+ */
+public final class WeaponRegistry {
+
+    public static final WeaponRegistry EMPTY = new Builder().build();
+
+    private final int[] keys;
+    private final WeaponData[] values; // null 表示空槽
+    private final int mask;
+    private final int size;
+    private final List<WeaponData> baseWeapons;
+    private final long[] materialMask; // 武器使用的物品类型 (按 Material ordinal 的位图)
+
+    private WeaponRegistry(int[] keys, WeaponData[] values, int size, List<WeaponData> baseWeapons, long[] materialMask) {
+        this.keys = keys;
+        this.values = values;
+        this.mask = keys.length - 1;
+        this.size = size;
+        this.baseWeapons = baseWeapons;
+        this.materialMask = materialMask;
+    }
+
+    /**
+     * 按 CustomModelData 查询武器数据
+     */
+    public WeaponData get(int id) {
+        int idx = mix(id) & mask;
+        WeaponData value;
+        while ((value = values[idx]) != null) {
+            if (keys[idx] == id) return value;
+            idx = (idx + 1) & mask;
+        }
+        return null;
+    }
+
+    /**
+     * 是否有武器使用该物品类型 (不是时可以跳过 CustomModelData 的读取)
+     */
+    public boolean usesMaterial(org.bukkit.Material material) {
+        int ordinal = material.ordinal();
+        return (materialMask[ordinal >>> 6] & (1L << ordinal)) != 0;
+    }
+
+    /**
+     * 已注册的 ID 数量 (包括变体)
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * 基础武器列表 (不含变体，按配置文件顺序)
+     */
+    public List<WeaponData> getBaseWeapons() {
+        return baseWeapons;
+    }
+
+    private static int mix(int id) {
+        int h = id * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+
+    /**
+     * 构建器：加载期间收集条目，build() 时一次性生成查询表
+     */
+    public static final class Builder {
+        private final Map<Integer, WeaponData> entries = new LinkedHashMap<>();
+        private final List<WeaponData> baseWeapons = new ArrayList<>();
+
+        /**
+         * 注册基础武器 (使用其自身 ID)
+         */
+        public Builder addWeapon(WeaponData data) {
+            baseWeapons.add(data);
+            entries.put(data.id, data);
+            return this;
+        }
+
+        /**
+         * 注册变体 ID，指向同一个 WeaponData
+         */
+        public Builder addVariant(int id, WeaponData data) {
+            entries.put(id, data);
+            return this;
+        }
+
+        public boolean contains(int id) {
+            return entries.containsKey(id);
+        }
+
+        public WeaponData get(int id) {
+            return entries.get(id);
+        }
+
+        public WeaponRegistry build() {
+            int capacity = 16;
+            while (capacity < entries.size() * 2) capacity <<= 1; // 负载因子不超过 0.5
+            int[] keys = new int[capacity];
+            WeaponData[] values = new WeaponData[capacity];
+            int mask = capacity - 1;
+            for (Map.Entry<Integer, WeaponData> entry : entries.entrySet()) {
+                int id = entry.getKey();
+                int idx = mix(id) & mask;
+                while (values[idx] != null) idx = (idx + 1) & mask;
+                keys[idx] = id;
+                values[idx] = entry.getValue();
+            }
+            long[] materialMask = new long[(org.bukkit.Material.values().length + 63) >>> 6];
+            for (WeaponData data : baseWeapons) {
+                if (data.material == null) continue;
+                int ordinal = data.material.ordinal();
+                materialMask[ordinal >>> 6] |= 1L << ordinal;
+            }
+            return new WeaponRegistry(keys, values, entries.size(), Collections.unmodifiableList(new ArrayList<>(baseWeapons)), materialMask);
+        }
+    }
+}